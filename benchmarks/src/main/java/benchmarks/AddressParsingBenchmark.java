@@ -0,0 +1,55 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import trace.TextTraceParser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+//the UI's split + Integer.parseInt path against the streaming byte parser used by the headless runner
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(Traces.LENGTH)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AddressParsingBenchmark {
+    @Param({"sequential", "random"})
+    public String pattern;
+
+    private String text;
+    private ByteBuffer bytes;
+
+    @Setup
+    public void setup() {
+        StringBuilder sb = new StringBuilder();
+        int[] trace = Traces.generate(pattern);
+        for (int i = 0; i < trace.length; i++) {
+            sb.append(i % 2 == 0 ? "0x" + Integer.toHexString(trace[i]) : Integer.toString(trace[i])).append('\n');
+        }
+        text = sb.toString();
+        bytes = ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Benchmark
+    public long splitAndParseInt() {
+        long sum = 0;
+        for (String line : text.split("\\s+|\\n")) {
+            if (line.trim().isEmpty()) continue;
+            sum += line.startsWith("0x") ? Integer.parseInt(line.substring(2), 16) : Integer.parseInt(line);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long streamingParser() {
+        long[] sum = new long[1];
+        TextTraceParser parser = new TextTraceParser();
+        ByteBuffer input = bytes.duplicate();
+        parser.feed(input, (address, op) -> sum[0] += address);
+        parser.finish((address, op) -> sum[0] += address);
+        return sum[0];
+    }
+}
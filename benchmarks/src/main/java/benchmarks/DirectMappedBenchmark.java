@@ -0,0 +1,39 @@
+package benchmarks;
+
+import Cache.DirectMappedCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(Traces.LENGTH)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class DirectMappedBenchmark {
+    @Param({"sequential", "strided", "random", "zipfian"})
+    public String pattern;
+
+    @Param({"1024"})
+    public int blocks;
+
+    private int[] trace;
+    private DirectMappedCache cache;
+
+    @Setup
+    public void setup() {
+        trace = Traces.generate(pattern);
+        cache = new DirectMappedCache(blocks);
+    }
+
+    @Benchmark
+    public int access() {
+        int hits = 0;
+        for (int address : trace) {
+            if (cache.access(address)) hits++;
+        }
+        return hits;
+    }
+}
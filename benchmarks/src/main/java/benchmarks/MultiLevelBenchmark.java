@@ -0,0 +1,38 @@
+package benchmarks;
+
+import Cache.DirectMappedCache;
+import Cache.MultiLevelCache;
+import Cache.SetAssociativeCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(Traces.LENGTH)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MultiLevelBenchmark {
+    @Param({"sequential", "strided", "random", "zipfian"})
+    public String pattern;
+
+    private int[] trace;
+    private MultiLevelCache cache;
+
+    @Setup
+    public void setup() {
+        trace = Traces.generate(pattern);
+        cache = new MultiLevelCache(new DirectMappedCache(256), new SetAssociativeCache(1024, 4), new SetAssociativeCache(4096, 8));
+    }
+
+    @Benchmark
+    public int access() {
+        int hits = 0;
+        for (int address : trace) {
+            if (cache.access(address)) hits++;
+        }
+        return hits;
+    }
+}
@@ -0,0 +1,49 @@
+package benchmarks;
+
+import Cache.CacheInterface;
+import Cache.FlatSetAssociativeCache;
+import Cache.SetAssociativeCache;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(Traces.LENGTH)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SetAssociativeBenchmark {
+    @Param({"sequential", "strided", "random", "zipfian"})
+    public String pattern;
+
+    //"full" makes the whole cache one set
+    @Param({"1", "2", "4", "8", "16", "full"})
+    public String ways;
+
+    @Param({"deque", "flat"})
+    public String engine;
+
+    @Param({"1024"})
+    public int blocks;
+
+    private int[] trace;
+    private CacheInterface cache;
+
+    @Setup
+    public void setup() {
+        trace = Traces.generate(pattern);
+        int w = ways.equals("full") ? blocks : Integer.parseInt(ways);
+        cache = engine.equals("flat") ? new FlatSetAssociativeCache(blocks, w) : new SetAssociativeCache(blocks, w);
+    }
+
+    @Benchmark
+    public int access() {
+        int hits = 0;
+        for (int address : trace) {
+            if (cache.access(address)) hits++;
+        }
+        return hits;
+    }
+}
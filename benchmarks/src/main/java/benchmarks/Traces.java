@@ -0,0 +1,58 @@
+package benchmarks;
+
+import java.util.Random;
+
+//synthetic address traces shared by the benchmarks; seeded so every run sees the same trace
+final class Traces {
+    static final int LENGTH = 1 << 16;
+    private static final int FOOTPRINT = 1 << 14; // distinct blocks touched by random and zipfian traces
+
+    private Traces() {
+    }
+
+    static int[] generate(String pattern) {
+        int[] trace = new int[LENGTH];
+        Random random = new Random(42);
+        switch (pattern) {
+            case "sequential":
+                for (int i = 0; i < LENGTH; i++) trace[i] = i;
+                break;
+            case "strided":
+                for (int i = 0; i < LENGTH; i++) trace[i] = (i * 64) % (FOOTPRINT * 8);
+                break;
+            case "random":
+                for (int i = 0; i < LENGTH; i++) trace[i] = random.nextInt(FOOTPRINT);
+                break;
+            case "zipfian":
+                double[] cdf = zipfCdf(FOOTPRINT, 0.99);
+                for (int i = 0; i < LENGTH; i++) trace[i] = sample(cdf, random.nextDouble());
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown pattern " + pattern);
+        }
+        return trace;
+    }
+
+    private static double[] zipfCdf(int n, double skew) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1.0 / Math.pow(i + 1, skew);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < n; i++) cdf[i] /= sum;
+        return cdf;
+    }
+
+    private static int sample(double[] cdf, double u) {
+        int lo = 0;
+        int hi = cdf.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cdf[mid] < u) lo = mid + 1;
+            else hi = mid;
+        }
+        // scatter ranks so popular blocks don't all land in the first sets
+        return (int) ((lo * 0x9E3779B1L) & (FOOTPRINT * 8 - 1));
+    }
+}
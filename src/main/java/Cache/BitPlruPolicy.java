@@ -0,0 +1,65 @@
+package Cache;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Bit pseudo-LRU (MRU bits): each way has a bit set when it is used; when the last clear bit
+ * would be set, all the others are cleared. The victim is the first way with a clear bit.
+ * At most 64 ways.
+ */
+public class BitPlruPolicy implements ReplacementPolicy, Snapshottable {
+    private long full;
+    private long[] used;
+
+    @Override
+    public void init(int sets, int ways) {
+        if (ways > 64) throw new IllegalArgumentException("Bit-PLRU supports at most 64 ways");
+        this.full = ways == 64 ? -1L : (1L << ways) - 1;
+        this.used = new long[sets];
+    }
+
+    @Override
+    public void onHit(int set, int way) {
+        touch(set, way);
+    }
+
+    @Override
+    public void onFill(int set, int way) {
+        touch(set, way);
+    }
+
+    private void touch(int set, int way) {
+        long bits = used[set] | 1L << way;
+        used[set] = bits == full ? 1L << way : bits;
+    }
+
+    @Override
+    public int victim(int set) {
+        // with one way the only bit is always set
+        long clear = ~used[set] & full;
+        return clear == 0 ? 0 : Long.numberOfTrailingZeros(clear);
+    }
+
+    @Override
+    public void reset() {
+        Arrays.fill(used, 0);
+    }
+
+    @Override
+    public long stateSize() {
+        return 1 + (long) used.length * Long.BYTES;
+    }
+
+    @Override
+    public void writeState(ByteBuffer out) {
+        out.put(CacheSnapshot.BIT_PLRU_POLICY);
+        CacheSnapshot.putLongs(out, used);
+    }
+
+    @Override
+    public void readState(ByteBuffer in) {
+        CacheSnapshot.checkPolicy(in, CacheSnapshot.BIT_PLRU_POLICY);
+        CacheSnapshot.getLongs(in, used);
+    }
+}
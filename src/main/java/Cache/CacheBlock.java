@@ -1,19 +1,20 @@
 
 package Cache;
 public class CacheBlock {
-    private int tag;
+    private long tag;
     private boolean valid;
+    private boolean dirty;
 
     public CacheBlock() {
         this.tag = -1;
         this.valid = false;
     }
 
-    public int getTag() {
+    public long getTag() {
         return tag;
     }
 
-    public void setTag(int tag) {
+    public void setTag(long tag) {
         this.tag = tag;
     }
 
@@ -25,8 +26,16 @@ public class CacheBlock {
         this.valid = valid;
     }
 
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    public void setDirty(boolean dirty) {
+        this.dirty = dirty;
+    }
+
     @Override
     public String toString() {
-        return "Tag: " + tag + ", Valid: " + valid;
+        return "Tag: " + tag + ", Valid: " + valid + ", Dirty: " + dirty;
     }
 }
@@ -0,0 +1,80 @@
+package Cache;
+
+/**
+ * Shape of a cache: line size in bytes, number of sets and ways. Splits a 64-bit address into
+ * block offset, set index and tag. Everything except the set count must be a power of two, so
+ * offset and (for power-of-two set counts) index and tag are precomputed shifts and masks;
+ * other set counts fall back to unsigned division.
+ *
+ * A line size of 1 treats every address as a block number, which is what the UI does.
+ */
+public final class CacheGeometry {
+    private final int lineSize;
+    private final int sets;
+    private final int ways;
+    private final int offsetBits;
+    private final boolean powerOfTwoSets;
+    private final int indexBits;
+    private final long indexMask;
+
+    public CacheGeometry(int lineSize, int sets, int ways) {
+        if (lineSize <= 0 || Integer.bitCount(lineSize) != 1) {
+            throw new IllegalArgumentException("Line size must be a power of two: " + lineSize);
+        }
+        if (sets <= 0 || ways <= 0) throw new IllegalArgumentException("Sets and ways must be positive");
+        this.lineSize = lineSize;
+        this.sets = sets;
+        this.ways = ways;
+        this.offsetBits = Integer.numberOfTrailingZeros(lineSize);
+        this.powerOfTwoSets = Integer.bitCount(sets) == 1;
+        this.indexBits = Integer.numberOfTrailingZeros(sets);
+        this.indexMask = sets - 1;
+    }
+
+    //geometry of the existing (totalBlocks, ways) constructors: one address per block
+    public static CacheGeometry ofBlocks(int totalBlocks, int ways) {
+        if (ways <= 0 || totalBlocks < ways) throw new IllegalArgumentException("Need at least one set: " + totalBlocks + "/" + ways);
+        return new CacheGeometry(1, totalBlocks / ways, ways);
+    }
+
+    public long blockAddress(long address) {
+        return address >>> offsetBits;
+    }
+
+    public int setIndex(long address) {
+        long block = address >>> offsetBits;
+        return powerOfTwoSets ? (int) (block & indexMask) : (int) Long.remainderUnsigned(block, sets);
+    }
+
+    public long tag(long address) {
+        long block = address >>> offsetBits;
+        return powerOfTwoSets ? block >>> indexBits : Long.divideUnsigned(block, sets);
+    }
+
+    //first byte address of the line holding tag in the given set
+    public long lineAddress(long tag, int set) {
+        long block = powerOfTwoSets ? (tag << indexBits) | set : tag * sets + set;
+        return block << offsetBits;
+    }
+
+    public int getLineSize() {
+        return lineSize;
+    }
+
+    public int getSets() {
+        return sets;
+    }
+
+    public int getWays() {
+        return ways;
+    }
+
+    public int getBlockCount() {
+        return sets * ways;
+    }
+
+    @Override
+    public String toString() {
+        return sets + " sets x " + ways + " ways x " + lineSize + " B";
+    }
+}
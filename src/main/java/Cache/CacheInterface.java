@@ -1,14 +1,64 @@
 
 package Cache;
 
+import java.util.Arrays;
+
 public interface CacheInterface {
-    boolean access(int address);
-    void insert(String address);
+    //a load: looks the address up, counts a hit or a miss, and allocates the line on a miss
+    boolean access(long address);
+    //a store: counts a hit or a miss like access, then follows the cache's write policy
+    boolean write(long address);
+    //like access, but a miss does not allocate
+    boolean lookup(long address);
+    //installs the line holding address (or promotes it if present) without counting a hit or miss
+    void fill(long address);
+    //installs a line handed down from the level above (a victim or a write-back) without reading it from
+    //below, merging the dirty flag if the line is already present; counts no hit, miss or traffic
+    void install(long address, boolean dirty);
+    //drops the line holding address, dirty or not; returns whether it was present
+    boolean invalidate(long address);
+    boolean isDirty(long address);
+    //whether the line holding address is present; counts nothing and changes no replacement state
+    boolean contains(long address);
+    //receives every eviction caused by access or fill; null removes the listener
+    void setEvictionListener(EvictionListener listener);
     int getHitCount();
     int getMissCount();
+    //bytes fetched from and sent to the next level by access and write; fill, install and invalidate
+    //are driven by an enclosing hierarchy, which does its own accounting
+    long getBytesRead();
+    long getBytesWritten();
+    WritePolicy getWritePolicy();
+    int getLineSize();
     void reset();
+    //zeroes the counters but keeps the lines and replacement state, e.g. to leave out a warm-up
+    void resetStats();
     CacheBlock[] getBlocks();
     int getLastAccessedIndex();
     int getBlockCount();
 
+    //32-bit addresses are zero-extended, so 0xFFFFFFFF is the highest address rather than -1
+    default boolean access(int address) {
+        return access(Integer.toUnsignedLong(address));
+    }
+
+    //runs length loads starting at addresses[offset] and returns the number of hits. Bit i of hitBitmap
+    //(word i / 64) is set if the i-th load hit and cleared otherwise; it needs (length + 63) / 64 words,
+    //or may be null when only the count matters. Counters may be updated only once the batch is done.
+    default int accessBatch(long[] addresses, int offset, int length, long[] hitBitmap) {
+        if (hitBitmap != null) Arrays.fill(hitBitmap, 0, (length + 63) >>> 6, 0L);
+        int hits = 0;
+        for (int i = 0; i < length; i++) {
+            if (access(addresses[offset + i])) {
+                hits++;
+                if (hitBitmap != null) hitBitmap[i >>> 6] |= 1L << i;
+            }
+        }
+        return hits;
+    }
+
+    //fills a decimal or 0x-prefixed hex address
+    default void insert(String address) {
+        fill(address.startsWith("0x") ? Long.parseUnsignedLong(address.substring(2), 16) : Long.parseUnsignedLong(address));
+    }
 }
@@ -0,0 +1,137 @@
+package Cache;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Saves a cache's complete state to a compact binary file and restores it into a cache of the
+ * same shape, e.g. to run many experiments from one warmed-up hierarchy. Both directions go
+ * through a memory-mapped buffer, so a restore is little more than a copy out of the page cache.
+ *
+ * File layout: magic "CSNP", version, then the cache's own state. Each cache writes a kind byte
+ * and its shape first, and a MultiLevelCache follows its own counters with every level in turn.
+ * Direct-mapped, set-associative, off-heap, fully-associative caches and hierarchies of them are
+ * supported, and so is the flat engine with any policy but OPT, whose state only makes sense at
+ * one position in one trace. A flat cache saves its policy's state after its lines, behind a byte
+ * naming the policy. Wrappers such as PrefetchingCache are not supported, so snapshot the cache
+ * they wrap.
+ */
+public final class CacheSnapshot {
+    private static final int MAGIC = 0x43534E50;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8;
+
+    // kinds, so restoring into a different kind of cache fails cleanly
+    static final byte DIRECT = 1;
+    static final byte SET_ASSOCIATIVE = 2;
+    static final byte OFF_HEAP = 3;
+    static final byte FULLY_ASSOCIATIVE = 4;
+    static final byte MULTI_LEVEL = 5;
+    static final byte FLAT = 6;
+    // replacement policies of a flat cache
+    static final byte LRU_POLICY = 1;
+    static final byte TREE_PLRU_POLICY = 2;
+    static final byte BIT_PLRU_POLICY = 3;
+    static final byte FIFO_POLICY = 4;
+    static final byte RANDOM_POLICY = 5;
+    static final byte LFU_POLICY = 6;
+    static final byte SRRIP_POLICY = 7;
+    static final byte BRRIP_POLICY = 8;
+    // kind, sets, ways, line size
+    static final int SHAPE_BYTES = 1 + 3 * Integer.BYTES;
+    // hit and miss counts, bytes read and written, last accessed index
+    static final int COUNTER_BYTES = 3 * Integer.BYTES + 2 * Long.BYTES;
+
+    private CacheSnapshot() {
+    }
+
+    public static boolean isSupported(CacheInterface cache) {
+        if (cache instanceof MultiLevelCache) {
+            MultiLevelCache multi = (MultiLevelCache) cache;
+            for (int level = 0; level < multi.getLevelCount(); level++) {
+                if (!isSupported(multi.getLevel(level))) return false;
+            }
+            return true;
+        }
+        if (cache instanceof FlatSetAssociativeCache) {
+            return ((FlatSetAssociativeCache) cache).getReplacementPolicy() instanceof Snapshottable;
+        }
+        return cache instanceof Snapshottable;
+    }
+
+    public static void save(CacheInterface cache, Path path) throws IOException {
+        if (!isSupported(cache)) throw new IllegalArgumentException("Snapshots are not supported for " + cache.getClass().getSimpleName());
+        Snapshottable state = (Snapshottable) cache;
+        long size = HEADER_BYTES + state.stateSize();
+        if (size > Integer.MAX_VALUE) throw new IOException("Snapshot too large for one file mapping: " + size + " bytes");
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            state.writeState(out);
+            out.force();
+        }
+    }
+
+    public static void restore(CacheInterface cache, Path path) throws IOException {
+        if (!isSupported(cache)) throw new IllegalArgumentException("Snapshots are not supported for " + cache.getClass().getSimpleName());
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (in.remaining() < HEADER_BYTES || in.getInt() != MAGIC) throw new IOException("Not a cache snapshot: " + path);
+            int version = in.getInt();
+            if (version != VERSION) throw new IOException("Unsupported snapshot version " + version + ": " + path);
+            ((Snapshottable) cache).readState(in);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated snapshot: " + path);
+        }
+    }
+
+    static void writeShape(ByteBuffer out, byte kind, CacheGeometry geometry) {
+        out.put(kind);
+        out.putInt(geometry.getSets());
+        out.putInt(geometry.getWays());
+        out.putInt(geometry.getLineSize());
+    }
+
+    static void checkPolicy(ByteBuffer in, byte kind) {
+        if (in.get() != kind) throw new IllegalArgumentException("Snapshot holds a different replacement policy");
+    }
+
+    static void putLongs(ByteBuffer out, long[] values) {
+        out.asLongBuffer().put(values);
+        out.position(out.position() + values.length * Long.BYTES);
+    }
+
+    static void getLongs(ByteBuffer in, long[] values) {
+        in.asLongBuffer().get(values);
+        in.position(in.position() + values.length * Long.BYTES);
+    }
+
+    static void putInts(ByteBuffer out, int[] values) {
+        out.asIntBuffer().put(values);
+        out.position(out.position() + values.length * Integer.BYTES);
+    }
+
+    static void getInts(ByteBuffer in, int[] values) {
+        in.asIntBuffer().get(values);
+        in.position(in.position() + values.length * Integer.BYTES);
+    }
+
+    static void checkShape(ByteBuffer in, byte kind, CacheGeometry geometry) {
+        byte savedKind = in.get();
+        int sets = in.getInt();
+        int ways = in.getInt();
+        int lineSize = in.getInt();
+        if (savedKind != kind) throw new IllegalArgumentException("Snapshot holds a different kind of cache");
+        if (sets != geometry.getSets() || ways != geometry.getWays() || lineSize != geometry.getLineSize()) {
+            throw new IllegalArgumentException("Snapshot of a " + sets + " sets x " + ways + " ways x " + lineSize
+                    + " B cache does not fit " + geometry);
+        }
+    }
+}
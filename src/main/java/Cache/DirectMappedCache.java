@@ -1,15 +1,40 @@
 
 package Cache;
 
-public class DirectMappedCache implements CacheInterface {
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+public class DirectMappedCache implements CacheInterface, SetMapped, Snapshottable {
     private int lastIndexAccessed = -1;//the cache block is empty and has not been used yet.
     private int hitCount = 0;
     private int missCount = 0;
     private final CacheBlock[] blocks;
     private final int size;
+    private final CacheGeometry geometry;
+    private final WritePolicy writePolicy;
+    private long bytesRead = 0;
+    private long bytesWritten = 0;
+    private volatile SetChangeListener changeListener; // swapped by the UI thread while a simulation runs
+    private EvictionListener evictionListener;
+    private SetStats setStats;
 
     public DirectMappedCache(int size) {
-        this.size = size;
+        this(new CacheGeometry(1, size, 1));
+    }
+
+    public DirectMappedCache(int size, int lineSize) {
+        this(new CacheGeometry(lineSize, size, 1));
+    }
+
+    public DirectMappedCache(CacheGeometry geometry) {
+        this(geometry, WritePolicy.WRITE_BACK);
+    }
+
+    public DirectMappedCache(CacheGeometry geometry, WritePolicy writePolicy) {
+        if (geometry.getWays() != 1) throw new IllegalArgumentException("A direct-mapped cache has one way");
+        this.geometry = geometry;
+        this.writePolicy = writePolicy;
+        this.size = geometry.getSets();
         this.blocks = new CacheBlock[size];
         for (int i = 0; i < size; i++) {
             blocks[i] = new CacheBlock();
@@ -27,48 +52,260 @@ public class DirectMappedCache implements CacheInterface {
     public void reset() {
         for (CacheBlock block : blocks) {
             block.setValid(false);
+            block.setDirty(false);
             block.setTag(0);
         }
         hitCount = 0;
         missCount = 0;
+        bytesRead = 0;
+        bytesWritten = 0;
         lastIndexAccessed = -1;
+        if (setStats != null) setStats.reset();
+        SetChangeListener listener = changeListener;
+        if (listener != null) {
+            for (int i = 0; i < blocks.length; i++) listener.setChanged(i);
+        }
+    }
+
+    public void resetStats() {
+        hitCount = 0;
+        missCount = 0;
+        bytesRead = 0;
+        bytesWritten = 0;
+        if (setStats != null) setStats.reset();
     }
 
     public CacheBlock[] getBlocks() {
         return blocks;
     }
 
-    public boolean access(int address) {
-        int index = address % blocks.length;
-        int tag = address / blocks.length;
+    public boolean access(long address) {
+        if (lookup(address)) return true;
+        miss(address, false);
+        return false;
+    }
+
+    //access in a loop with the invariant fields in locals; only misses leave the loop
+    @Override
+    public int accessBatch(long[] addresses, int offset, int length, long[] hitBitmap) {
+        if (hitBitmap != null) Arrays.fill(hitBitmap, 0, (length + 63) >>> 6, 0L);
+        CacheBlock[] blocks = this.blocks;
+        CacheGeometry geometry = this.geometry;
+        SetStats stats = setStats;
+        int hits = 0;
+        for (int i = 0; i < length; i++) {
+            long address = addresses[offset + i];
+            int index = geometry.setIndex(address);
+            CacheBlock block = blocks[index];
+            boolean hit = block.isValid() && block.getTag() == geometry.tag(address);
+            if (stats != null) stats.access(index, geometry.blockAddress(address), hit);
+            if (hit) {
+                hits++;
+                if (hitBitmap != null) hitBitmap[i >>> 6] |= 1L << i;
+            } else {
+                miss(address, false);
+            }
+        }
+        hitCount += hits;
+        missCount += length - hits;
+        if (length > 0) lastIndexAccessed = geometry.setIndex(addresses[offset + length - 1]);
+        return hits;
+    }
+
+    public boolean write(long address) {
+        boolean hit = lookup(address);
+        if (writePolicy == WritePolicy.WRITE_THROUGH) {
+            bytesWritten += WritePolicy.storeBytes(geometry.getLineSize());
+        } else if (hit) {
+            markDirty(lastIndexAccessed);
+        } else {
+            miss(address, true);
+        }
+        return hit;
+    }
+
+    //fetches the line from the next level, writing back a dirty victim
+    private void miss(long address, boolean dirty) {
+        bytesRead += geometry.getLineSize();
+        if (place(geometry.setIndex(address), geometry.tag(address), dirty)) bytesWritten += geometry.getLineSize();
+    }
+
+    public boolean lookup(long address) {
+        int index = geometry.setIndex(address);
+        long tag = geometry.tag(address);
         lastIndexAccessed = index;
         CacheBlock block = blocks[index];
+        boolean hit = block.isValid() && block.getTag() == tag;
+        if (hit) hitCount++;
+        else missCount++;
+        if (setStats != null) setStats.access(index, geometry.blockAddress(address), hit);
+        return hit;
+    }
+
+    public void fill(long address) {
+        int index = geometry.setIndex(address);
+        long tag = geometry.tag(address);
+        CacheBlock block = blocks[index];
+        if (block.isValid() && block.getTag() == tag) return;
+        place(index, tag, false);
+    }
+
+    public void install(long address, boolean dirty) {
+        int index = geometry.setIndex(address);
+        long tag = geometry.tag(address);
+        CacheBlock block = blocks[index];
         if (block.isValid() && block.getTag() == tag) {
-            hitCount++;
-            return true;
-        } else {
-            missCount++;
-            block.setTag(tag);
-            block.setValid(true);
-            return false;
+            if (dirty) markDirty(index);
+            return;
         }
+        place(index, tag, dirty);
     }
 
-    public int getLastAccessedIndex() {
-        return lastIndexAccessed;
+    private void markDirty(int index) {
+        if (blocks[index].isDirty()) return;
+        blocks[index].setDirty(true);
+        SetChangeListener listener = changeListener;
+        if (listener != null) listener.setChanged(index);
     }
 
-    public void insert(String address) {
-        int addr = address.startsWith("0x") ? Integer.parseInt(address.substring(2), 16) : Integer.parseInt(address);
-        int index = addr % blocks.length;
-        int tag = addr / blocks.length;
+    //replaces whatever is in the slot; returns whether a dirty line was evicted
+    private boolean place(int index, long tag, boolean dirty) {
         CacheBlock block = blocks[index];
+        boolean victimDirty = block.isValid() && block.isDirty();
+        if (block.isValid() && setStats != null) setStats.evicted(index);
+        if (block.isValid() && evictionListener != null) {
+            evictionListener.evicted(geometry.lineAddress(block.getTag(), index), victimDirty);
+        }
         block.setTag(tag);
         block.setValid(true);
+        block.setDirty(dirty);
+        SetChangeListener listener = changeListener;
+        if (listener != null) listener.setChanged(index);
+        return victimDirty;
+    }
+
+    public boolean invalidate(long address) {
+        int index = geometry.setIndex(address);
+        CacheBlock block = blocks[index];
+        if (!block.isValid() || block.getTag() != geometry.tag(address)) return false;
+        block.setValid(false);
+        block.setDirty(false);
+        SetChangeListener listener = changeListener;
+        if (listener != null) listener.setChanged(index);
+        return true;
+    }
+
+    public boolean contains(long address) {
+        CacheBlock block = blocks[geometry.setIndex(address)];
+        return block.isValid() && block.getTag() == geometry.tag(address);
+    }
+
+    public boolean isDirty(long address) {
+        CacheBlock block = blocks[geometry.setIndex(address)];
+        return block.isValid() && block.isDirty() && block.getTag() == geometry.tag(address);
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    public WritePolicy getWritePolicy() {
+        return writePolicy;
+    }
+
+    public int getLineSize() {
+        return geometry.getLineSize();
+    }
+
+    public int getLastAccessedIndex() {
+        return lastIndexAccessed;
+    }
+
+    public void setEvictionListener(EvictionListener listener) {
+        this.evictionListener = listener;
     }
 
 
     public int getBlockCount() {
         return blocks.length;
     }
+
+    public CacheGeometry getGeometry() {
+        return geometry;
+    }
+
+    @Override
+    public int getSetCount() {
+        return blocks.length;
+    }
+
+    @Override
+    public int getWays() {
+        return 1;
+    }
+
+    @Override
+    public int setIndexOf(long address) {
+        return geometry.setIndex(address);
+    }
+
+    @Override
+    public CacheBlock getBlock(int set, int way) {
+        return blocks[set];
+    }
+
+    @Override
+    public void setChangeListener(SetChangeListener listener) {
+        this.changeListener = listener;
+    }
+
+    @Override
+    public void setSetStatsEnabled(boolean enabled) {
+        setStats = enabled ? new SetStats(getSetCount()) : null;
+    }
+
+    @Override
+    public SetStats getSetStats() {
+        return setStats;
+    }
+
+    //per block: tag, then valid (1) and dirty (2) bits
+    @Override
+    public long stateSize() {
+        return CacheSnapshot.SHAPE_BYTES + CacheSnapshot.COUNTER_BYTES + (long) size * (Long.BYTES + 1);
+    }
+
+    @Override
+    public void writeState(ByteBuffer out) {
+        CacheSnapshot.writeShape(out, CacheSnapshot.DIRECT, geometry);
+        out.putInt(hitCount).putInt(missCount).putLong(bytesRead).putLong(bytesWritten).putInt(lastIndexAccessed);
+        for (CacheBlock block : blocks) {
+            out.putLong(block.getTag());
+            out.put((byte) ((block.isValid() ? 1 : 0) | (block.isDirty() ? 2 : 0)));
+        }
+    }
+
+    @Override
+    public void readState(ByteBuffer in) {
+        CacheSnapshot.checkShape(in, CacheSnapshot.DIRECT, geometry);
+        hitCount = in.getInt();
+        missCount = in.getInt();
+        bytesRead = in.getLong();
+        bytesWritten = in.getLong();
+        lastIndexAccessed = in.getInt();
+        for (CacheBlock block : blocks) {
+            block.setTag(in.getLong());
+            byte flags = in.get();
+            block.setValid((flags & 1) != 0);
+            block.setDirty((flags & 2) != 0);
+        }
+        SetChangeListener listener = changeListener;
+        if (listener != null) {
+            for (int i = 0; i < size; i++) listener.setChanged(i);
+        }
+    }
 }
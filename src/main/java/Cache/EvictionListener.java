@@ -0,0 +1,7 @@
+package Cache;
+
+//told about every valid line a cache drops to make room, identified by its first byte address;
+//dirty is set when the line holds stores that have not been written back yet
+public interface EvictionListener {
+    void evicted(long lineAddress, boolean dirty);
+}
@@ -0,0 +1,60 @@
+package Cache;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+//evicts the line that was filled first; hits change nothing
+public class FifoPolicy implements ReplacementPolicy, Snapshottable {
+    private int ways;
+    private long[] filledAt;
+    private long clock = 0;
+
+    @Override
+    public void init(int sets, int ways) {
+        this.ways = ways;
+        this.filledAt = new long[sets * ways];
+    }
+
+    @Override
+    public void onHit(int set, int way) {
+    }
+
+    @Override
+    public void onFill(int set, int way) {
+        filledAt[set * ways + way] = ++clock;
+    }
+
+    @Override
+    public int victim(int set) {
+        int base = set * ways;
+        int victim = 0;
+        for (int w = 1; w < ways; w++) {
+            if (filledAt[base + w] < filledAt[base + victim]) victim = w;
+        }
+        return victim;
+    }
+
+    @Override
+    public void reset() {
+        Arrays.fill(filledAt, 0);
+        clock = 0;
+    }
+
+    @Override
+    public long stateSize() {
+        return 1 + Long.BYTES + (long) filledAt.length * Long.BYTES;
+    }
+
+    @Override
+    public void writeState(ByteBuffer out) {
+        out.put(CacheSnapshot.FIFO_POLICY).putLong(clock);
+        CacheSnapshot.putLongs(out, filledAt);
+    }
+
+    @Override
+    public void readState(ByteBuffer in) {
+        CacheSnapshot.checkPolicy(in, CacheSnapshot.FIFO_POLICY);
+        clock = in.getLong();
+        CacheSnapshot.getLongs(in, filledAt);
+    }
+}
@@ -0,0 +1,427 @@
+package Cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Set-associative cache that keeps its state in flat primitive arrays indexed by
+ * set * ways + way, so access() never allocates. Victims are chosen by a ReplacementPolicy;
+ * with the default LruPolicy hits and misses are identical to SetAssociativeCache.
+ * Snapshots include the policy's state, for every policy but OptPolicy.
+ */
+public class FlatSetAssociativeCache implements CacheInterface, SetMapped, Snapshottable {
+    private final int sets;
+    private final int ways;
+    private final CacheGeometry geometry;
+    private final long[] tags;
+    private final boolean[] valid;
+    private final boolean[] dirty;
+    private final WritePolicy writePolicy;
+    private final ReplacementPolicy policy;
+    private int lastSlot;          // slot hit or filled by the last touch()
+    private boolean victimDirty;   // whether the last touch() evicted a dirty line
+    private long bytesRead = 0;
+    private long bytesWritten = 0;
+    private int hitCount = 0;
+    private int missCount = 0;
+    private int lastAccessedSet = -1;
+    private volatile SetChangeListener changeListener; // swapped by the UI thread while a simulation runs
+    private EvictionListener evictionListener;
+    private SetStats setStats;
+
+    public FlatSetAssociativeCache(int totalBlocks, int ways) {
+        this(CacheGeometry.ofBlocks(totalBlocks, ways));
+    }
+
+    public FlatSetAssociativeCache(CacheGeometry geometry) {
+        this(geometry, WritePolicy.WRITE_BACK);
+    }
+
+    public FlatSetAssociativeCache(CacheGeometry geometry, WritePolicy writePolicy) {
+        this(geometry, writePolicy, new LruPolicy());
+    }
+
+    public FlatSetAssociativeCache(CacheGeometry geometry, WritePolicy writePolicy, ReplacementPolicy policy) {
+        this.geometry = geometry;
+        this.writePolicy = writePolicy;
+        this.policy = policy;
+        this.ways = geometry.getWays();
+        this.sets = geometry.getSets();
+        this.tags = new long[sets * ways];
+        this.valid = new boolean[sets * ways];
+        this.dirty = new boolean[sets * ways];
+        policy.init(sets, ways);
+    }
+
+    @Override
+    public boolean access(long address) {
+        int index = geometry.setIndex(address);
+        lastAccessedSet = index;
+        policy.onAccess();
+        boolean hit = touch(index, geometry.tag(address), true);
+        record(index, address, hit);
+        if (hit) {
+            hitCount++;
+            return true;
+        }
+        missCount++;
+        countMiss();
+        return false;
+    }
+
+    @Override
+    public boolean write(long address) {
+        int index = geometry.setIndex(address);
+        lastAccessedSet = index;
+        policy.onAccess();
+        boolean allocate = writePolicy == WritePolicy.WRITE_BACK;
+        boolean hit = touch(index, geometry.tag(address), allocate);
+        record(index, address, hit);
+        if (hit) {
+            hitCount++;
+        } else {
+            missCount++;
+        }
+        if (allocate) {
+            if (!hit) countMiss();
+            markDirty(index);
+        } else {
+            bytesWritten += WritePolicy.storeBytes(geometry.getLineSize());
+        }
+        return hit;
+    }
+
+    //access in one loop over the flat arrays: the tag compare across the ways of a set runs
+    //inline and only a miss goes through touch() to allocate
+    @Override
+    public int accessBatch(long[] addresses, int offset, int length, long[] hitBitmap) {
+        if (hitBitmap != null) Arrays.fill(hitBitmap, 0, (length + 63) >>> 6, 0L);
+        CacheGeometry geometry = this.geometry;
+        ReplacementPolicy policy = this.policy;
+        long[] tags = this.tags;
+        boolean[] valid = this.valid;
+        int ways = this.ways;
+        int hits = 0;
+        int index = lastAccessedSet;
+        for (int i = 0; i < length; i++) {
+            long address = addresses[offset + i];
+            index = geometry.setIndex(address);
+            long tag = geometry.tag(address);
+            policy.onAccess();
+            int base = index * ways;
+            int slot = base;
+            int end = base + ways;
+            while (slot < end && (tags[slot] != tag || !valid[slot])) slot++;
+            boolean hit = slot < end;
+            if (hit) {
+                policy.onHit(index, slot - base);
+                lastSlot = slot;
+                hits++;
+                if (hitBitmap != null) hitBitmap[i >>> 6] |= 1L << i;
+            } else {
+                touch(index, tag, true);
+                countMiss();
+            }
+            record(index, address, hit);
+        }
+        hitCount += hits;
+        missCount += length - hits;
+        lastAccessedSet = index;
+        return hits;
+    }
+
+    //a line fetched from the next level, plus the write-back of a dirty victim
+    private void countMiss() {
+        bytesRead += geometry.getLineSize();
+        if (victimDirty) bytesWritten += geometry.getLineSize();
+    }
+
+    @Override
+    public boolean lookup(long address) {
+        int index = geometry.setIndex(address);
+        lastAccessedSet = index;
+        policy.onAccess();
+        boolean hit = touch(index, geometry.tag(address), false);
+        record(index, address, hit);
+        if (hit) hitCount++;
+        else missCount++;
+        return hit;
+    }
+
+    private void record(int index, long address, boolean hit) {
+        if (setStats != null) setStats.access(index, geometry.blockAddress(address), hit);
+    }
+
+    @Override
+    public void fill(long address) {
+        touch(geometry.setIndex(address), geometry.tag(address), true);
+    }
+
+    @Override
+    public void install(long address, boolean dirty) {
+        int index = geometry.setIndex(address);
+        touch(index, geometry.tag(address), true);
+        if (dirty) markDirty(index);
+    }
+
+    private void markDirty(int index) {
+        if (dirty[lastSlot]) return;
+        dirty[lastSlot] = true;
+        SetChangeListener listener = changeListener;
+        if (listener != null) listener.setChanged(index);
+    }
+
+    /**
+     * Tells the policy about a hit if the tag is present. Otherwise, if allocate is set, puts a
+     * clean line in the first invalid way, or the policy's victim when the set is full. Returns
+     * whether the tag was present; lastSlot and victimDirty describe what happened.
+     */
+    private boolean touch(int index, long tag, boolean allocate) {
+        int base = index * ways;
+        int free = -1;
+        for (int i = base, end = base + ways; i < end; i++) {
+            if (!valid[i]) {
+                if (free < 0) free = i;
+            } else if (tags[i] == tag) {
+                policy.onHit(index, i - base);
+                lastSlot = i;
+                return true;
+            }
+        }
+        if (!allocate) return false;
+        int victim = free >= 0 ? free : base + policy.victim(index);
+        victimDirty = free < 0 && dirty[victim];
+        if (free < 0 && setStats != null) setStats.evicted(index);
+        if (free < 0 && evictionListener != null) {
+            evictionListener.evicted(geometry.lineAddress(tags[victim], index), victimDirty);
+        }
+        tags[victim] = tag;
+        valid[victim] = true;
+        dirty[victim] = false;
+        policy.onFill(index, victim - base);
+        lastSlot = victim;
+        SetChangeListener listener = changeListener;
+        if (listener != null) listener.setChanged(index);
+        return false;
+    }
+
+    @Override
+    public boolean invalidate(long address) {
+        int index = geometry.setIndex(address);
+        long tag = geometry.tag(address);
+        for (int i = index * ways, end = i + ways; i < end; i++) {
+            if (valid[i] && tags[i] == tag) {
+                valid[i] = false;
+                dirty[i] = false;
+                policy.onInvalidate(index, i - index * ways);
+                SetChangeListener listener = changeListener;
+                if (listener != null) listener.setChanged(index);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean contains(long address) {
+        int index = geometry.setIndex(address);
+        long tag = geometry.tag(address);
+        for (int i = index * ways, end = i + ways; i < end; i++) {
+            if (valid[i] && tags[i] == tag) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public boolean isDirty(long address) {
+        int index = geometry.setIndex(address);
+        long tag = geometry.tag(address);
+        for (int i = index * ways, end = i + ways; i < end; i++) {
+            if (valid[i] && tags[i] == tag) return dirty[i];
+        }
+        return false;
+    }
+
+    @Override
+    public void setEvictionListener(EvictionListener listener) {
+        this.evictionListener = listener;
+    }
+
+    @Override
+    public void reset() {
+        hitCount = 0;
+        missCount = 0;
+        lastAccessedSet = -1;
+        bytesRead = 0;
+        bytesWritten = 0;
+        Arrays.fill(valid, false);
+        Arrays.fill(dirty, false);
+        policy.reset();
+        if (setStats != null) setStats.reset();
+        SetChangeListener listener = changeListener;
+        if (listener != null) {
+            for (int i = 0; i < sets; i++) listener.setChanged(i);
+        }
+    }
+
+    @Override
+    public void resetStats() {
+        hitCount = 0;
+        missCount = 0;
+        bytesRead = 0;
+        bytesWritten = 0;
+        if (setStats != null) setStats.reset();
+    }
+
+    @Override
+    public int getHitCount() {
+        return hitCount;
+    }
+
+    @Override
+    public int getMissCount() {
+        return missCount;
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public WritePolicy getWritePolicy() {
+        return writePolicy;
+    }
+
+    @Override
+    public int getLineSize() {
+        return geometry.getLineSize();
+    }
+
+    //valid blocks only, in way order; unlike SetAssociativeCache there is no general recency order to show
+    @Override
+    public CacheBlock[] getBlocks() {
+        List<CacheBlock> all = new ArrayList<>();
+        for (int slot = 0; slot < sets * ways; slot++) {
+            if (!valid[slot]) continue;
+            CacheBlock block = new CacheBlock();
+            block.setTag(tags[slot]);
+            block.setValid(true);
+            block.setDirty(dirty[slot]);
+            all.add(block);
+        }
+        return all.toArray(new CacheBlock[0]);
+    }
+
+    @Override
+    public int getLastAccessedIndex() {
+        return lastAccessedSet;
+    }
+
+    @Override
+    public int getBlockCount() {
+        return sets * ways;
+    }
+
+    public CacheGeometry getGeometry() {
+        return geometry;
+    }
+
+    public ReplacementPolicy getReplacementPolicy() {
+        return policy;
+    }
+
+    @Override
+    public int getSetCount() {
+        return sets;
+    }
+
+    @Override
+    public int getWays() {
+        return ways;
+    }
+
+    @Override
+    public int setIndexOf(long address) {
+        return geometry.setIndex(address);
+    }
+
+    //ways are physical slots here; a hit does not move a block
+    @Override
+    public CacheBlock getBlock(int set, int way) {
+        int slot = set * ways + way;
+        if (!valid[slot]) return null;
+        CacheBlock block = new CacheBlock();
+        block.setTag(tags[slot]);
+        block.setValid(true);
+        block.setDirty(dirty[slot]);
+        return block;
+    }
+
+    @Override
+    public void setChangeListener(SetChangeListener listener) {
+        this.changeListener = listener;
+    }
+
+    @Override
+    public void setSetStatsEnabled(boolean enabled) {
+        setStats = enabled ? new SetStats(getSetCount()) : null;
+    }
+
+    @Override
+    public SetStats getSetStats() {
+        return setStats;
+    }
+
+    @Override
+    public long stateSize() {
+        return CacheSnapshot.SHAPE_BYTES + CacheSnapshot.COUNTER_BYTES + (long) tags.length * (Long.BYTES + 1)
+                + policyState().stateSize();
+    }
+
+    @Override
+    public void writeState(ByteBuffer out) {
+        CacheSnapshot.writeShape(out, CacheSnapshot.FLAT, geometry);
+        out.putInt(hitCount).putInt(missCount).putLong(bytesRead).putLong(bytesWritten).putInt(lastAccessedSet);
+        for (int slot = 0; slot < tags.length; slot++) {
+            out.putLong(tags[slot]);
+            out.put((byte) ((valid[slot] ? 1 : 0) | (dirty[slot] ? 2 : 0)));
+        }
+        policyState().writeState(out);
+    }
+
+    @Override
+    public void readState(ByteBuffer in) {
+        CacheSnapshot.checkShape(in, CacheSnapshot.FLAT, geometry);
+        hitCount = in.getInt();
+        missCount = in.getInt();
+        bytesRead = in.getLong();
+        bytesWritten = in.getLong();
+        lastAccessedSet = in.getInt();
+        for (int slot = 0; slot < tags.length; slot++) {
+            tags[slot] = in.getLong();
+            byte flags = in.get();
+            valid[slot] = (flags & 1) != 0;
+            dirty[slot] = (flags & 2) != 0;
+        }
+        policyState().readState(in);
+        SetChangeListener listener = changeListener;
+        if (listener != null) {
+            for (int i = 0; i < sets; i++) listener.setChanged(i);
+        }
+    }
+
+    private Snapshottable policyState() {
+        if (!(policy instanceof Snapshottable)) {
+            throw new IllegalArgumentException("Snapshots are not supported for " + policy.getClass().getSimpleName());
+        }
+        return (Snapshottable) policy;
+    }
+}
@@ -0,0 +1,299 @@
+package Cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fully-associative LRU cache with O(1) lookup, promotion and eviction however many blocks it
+ * has: a hash index from block address to slot, and a doubly linked LRU list threaded through
+ * int arrays. Hits and misses are identical to a SetAssociativeCache with a single set, which
+ * scans its whole deque on every access.
+ */
+public class FullyAssociativeCache implements CacheInterface, Snapshottable {
+    private static final int NONE = -1;
+
+    private final CacheGeometry geometry;
+    private final WritePolicy writePolicy;
+    private final int capacity;
+    private final LongIntHashMap index;
+    private final long[] tags;
+    private final boolean[] dirty;
+    private final int[] prev;       // towards LRU
+    private final int[] next;       // towards MRU; also chains the free list
+    private int lru = NONE;
+    private int mru = NONE;
+    private int free = NONE;        // slots emptied by invalidate()
+    private int unused = 0;         // slots [unused, capacity) were never filled
+    private long bytesRead = 0;
+    private long bytesWritten = 0;
+    private int hitCount = 0;
+    private int missCount = 0;
+    private int lastAccessedIndex = -1;
+    private EvictionListener evictionListener;
+
+    public FullyAssociativeCache(int totalBlocks) {
+        this(CacheGeometry.ofBlocks(totalBlocks, totalBlocks));
+    }
+
+    public FullyAssociativeCache(CacheGeometry geometry) {
+        this(geometry, WritePolicy.WRITE_BACK);
+    }
+
+    public FullyAssociativeCache(CacheGeometry geometry, WritePolicy writePolicy) {
+        if (geometry.getSets() != 1) throw new IllegalArgumentException("A fully-associative cache has one set: " + geometry);
+        this.geometry = geometry;
+        this.writePolicy = writePolicy;
+        this.capacity = geometry.getWays();
+        this.index = new LongIntHashMap(capacity);
+        this.tags = new long[capacity];
+        this.dirty = new boolean[capacity];
+        this.prev = new int[capacity];
+        this.next = new int[capacity];
+    }
+
+    @Override
+    public boolean access(long address) {
+        if (lookup(address)) return true;
+        miss(address, false);
+        return false;
+    }
+
+    @Override
+    public boolean write(long address) {
+        boolean hit = lookup(address);
+        if (writePolicy == WritePolicy.WRITE_THROUGH) {
+            bytesWritten += WritePolicy.storeBytes(geometry.getLineSize());
+        } else if (hit) {
+            dirty[mru] = true; // promoted to MRU by lookup
+        } else {
+            miss(address, true);
+        }
+        return hit;
+    }
+
+    //fetches the line from the next level, writing back a dirty victim
+    private void miss(long address, boolean dirty) {
+        bytesRead += geometry.getLineSize();
+        if (allocate(geometry.blockAddress(address), dirty)) bytesWritten += geometry.getLineSize();
+    }
+
+    @Override
+    public boolean lookup(long address) {
+        lastAccessedIndex = 0;
+        int slot = index.get(geometry.blockAddress(address));
+        if (slot == LongIntHashMap.MISSING) {
+            missCount++;
+            return false;
+        }
+        promote(slot);
+        hitCount++;
+        return true;
+    }
+
+    @Override
+    public void fill(long address) {
+        long block = geometry.blockAddress(address);
+        int slot = index.get(block);
+        if (slot == LongIntHashMap.MISSING) allocate(block, false);
+        else promote(slot);
+    }
+
+    @Override
+    public void install(long address, boolean dirty) {
+        long block = geometry.blockAddress(address);
+        int slot = index.get(block);
+        if (slot == LongIntHashMap.MISSING) {
+            allocate(block, dirty);
+        } else {
+            promote(slot);
+            if (dirty) this.dirty[slot] = true;
+        }
+    }
+
+    private void promote(int slot) {
+        if (slot == mru) return;
+        unlink(slot);
+        linkMru(slot);
+    }
+
+    //places the block at the MRU end, evicting the LRU block if the cache is full; returns whether the victim was dirty
+    private boolean allocate(long block, boolean isDirty) {
+        int slot;
+        boolean victimDirty = false;
+        if (free != NONE) {
+            slot = free;
+            free = next[slot];
+        } else if (unused < capacity) {
+            slot = unused++;
+        } else {
+            slot = lru;
+            unlink(slot);
+            index.remove(tags[slot]);
+            victimDirty = dirty[slot];
+            if (evictionListener != null) evictionListener.evicted(geometry.lineAddress(tags[slot], 0), victimDirty);
+        }
+        tags[slot] = block;
+        dirty[slot] = isDirty;
+        index.put(block, slot);
+        linkMru(slot);
+        return victimDirty;
+    }
+
+    private void unlink(int slot) {
+        if (prev[slot] == NONE) lru = next[slot];
+        else next[prev[slot]] = next[slot];
+        if (next[slot] == NONE) mru = prev[slot];
+        else prev[next[slot]] = prev[slot];
+    }
+
+    private void linkMru(int slot) {
+        prev[slot] = mru;
+        next[slot] = NONE;
+        if (mru == NONE) lru = slot;
+        else next[mru] = slot;
+        mru = slot;
+    }
+
+    @Override
+    public boolean invalidate(long address) {
+        int slot = index.remove(geometry.blockAddress(address));
+        if (slot == LongIntHashMap.MISSING) return false;
+        unlink(slot);
+        dirty[slot] = false;
+        next[slot] = free;
+        free = slot;
+        return true;
+    }
+
+    @Override
+    public boolean contains(long address) {
+        return index.get(geometry.blockAddress(address)) != LongIntHashMap.MISSING;
+    }
+
+    @Override
+    public boolean isDirty(long address) {
+        int slot = index.get(geometry.blockAddress(address));
+        return slot != LongIntHashMap.MISSING && dirty[slot];
+    }
+
+    @Override
+    public void setEvictionListener(EvictionListener listener) {
+        this.evictionListener = listener;
+    }
+
+    @Override
+    public void reset() {
+        hitCount = 0;
+        missCount = 0;
+        bytesRead = 0;
+        bytesWritten = 0;
+        lastAccessedIndex = -1;
+        index.clear();
+        lru = NONE;
+        mru = NONE;
+        free = NONE;
+        unused = 0;
+    }
+
+    @Override
+    public void resetStats() {
+        hitCount = 0;
+        missCount = 0;
+        bytesRead = 0;
+        bytesWritten = 0;
+    }
+
+    @Override
+    public int getHitCount() {
+        return hitCount;
+    }
+
+    @Override
+    public int getMissCount() {
+        return missCount;
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public WritePolicy getWritePolicy() {
+        return writePolicy;
+    }
+
+    @Override
+    public int getLineSize() {
+        return geometry.getLineSize();
+    }
+
+    //ordered from LRU to MRU, like the single set of a SetAssociativeCache
+    @Override
+    public CacheBlock[] getBlocks() {
+        List<CacheBlock> all = new ArrayList<>(index.size());
+        for (int slot = lru; slot != NONE; slot = next[slot]) {
+            CacheBlock block = new CacheBlock();
+            block.setTag(tags[slot]);
+            block.setValid(true);
+            block.setDirty(dirty[slot]);
+            all.add(block);
+        }
+        return all.toArray(new CacheBlock[0]);
+    }
+
+    @Override
+    public int getLastAccessedIndex() {
+        return lastAccessedIndex;
+    }
+
+    @Override
+    public int getBlockCount() {
+        return capacity;
+    }
+
+    public CacheGeometry getGeometry() {
+        return geometry;
+    }
+
+    //the number of lines, then each line's block address and dirty flag from LRU to MRU
+    @Override
+    public long stateSize() {
+        return CacheSnapshot.SHAPE_BYTES + CacheSnapshot.COUNTER_BYTES + Integer.BYTES + (long) index.size() * (Long.BYTES + 1);
+    }
+
+    @Override
+    public void writeState(ByteBuffer out) {
+        CacheSnapshot.writeShape(out, CacheSnapshot.FULLY_ASSOCIATIVE, geometry);
+        out.putInt(hitCount).putInt(missCount).putLong(bytesRead).putLong(bytesWritten).putInt(lastAccessedIndex);
+        out.putInt(index.size());
+        for (int slot = lru; slot != NONE; slot = next[slot]) {
+            out.putLong(tags[slot]);
+            out.put((byte) (dirty[slot] ? 1 : 0));
+        }
+    }
+
+    @Override
+    public void readState(ByteBuffer in) {
+        CacheSnapshot.checkShape(in, CacheSnapshot.FULLY_ASSOCIATIVE, geometry);
+        reset();
+        hitCount = in.getInt();
+        missCount = in.getInt();
+        bytesRead = in.getLong();
+        bytesWritten = in.getLong();
+        lastAccessedIndex = in.getInt();
+        int count = in.getInt();
+        if (count < 0 || count > capacity) throw new IllegalArgumentException("Corrupt snapshot: " + count + " lines");
+        // allocating in LRU to MRU order rebuilds the list and the index
+        for (int i = 0; i < count; i++) {
+            long block = in.getLong();
+            allocate(block, in.get() != 0);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package Cache;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Describes a cache hierarchy of any depth, read from a plain text file:
+ *
+ * <pre>
+ * # level &lt;blocks&gt; &lt;ways&gt; &lt;hit latency&gt; [wb|wt] [offheap], listed from L1 down
+ * level 64 2 4 wt
+ * level 512 8 12
+ * level 4096 16 40 offheap
+ * memory 200          # memory latency in cycles
+ * line-size 64        # bytes per line, shared by all levels (default 1)
+ * inclusion nine      # nine|inclusive|exclusive (default nine)
+ * </pre>
+ *
+ * A level with one way is built as a direct-mapped cache, any other as a set-associative one.
+ * An optional field of a level picks write-back/write-allocate (wb, the default) or
+ * write-through/no-write-allocate (wt). Another, offheap, keeps a set-associative level's state in
+ * an OffHeapSetAssociativeCache, which suits large last-level caches.
+ */
+public class HierarchyConfig {
+    private final List<Level> levels = new ArrayList<>();
+    private int memoryLatency = MultiLevelCache.DEFAULT_MEMORY_LATENCY;
+    private int lineSize = 1;
+    private InclusionPolicy policy = InclusionPolicy.NINE;
+
+    //the UI's Multi-Level preset: L1 4 blocks direct-mapped, L2 8 blocks 2-way, L3 16 blocks 4-way
+    public static HierarchyConfig defaults(int lineSize, InclusionPolicy policy) {
+        HierarchyConfig config = new HierarchyConfig();
+        config.addLevel(4, 1, MultiLevelCache.DEFAULT_HIT_LATENCIES[0], WritePolicy.WRITE_BACK);
+        config.addLevel(8, 2, MultiLevelCache.DEFAULT_HIT_LATENCIES[1], WritePolicy.WRITE_BACK);
+        config.addLevel(16, 4, MultiLevelCache.DEFAULT_HIT_LATENCIES[2], WritePolicy.WRITE_BACK);
+        config.lineSize = lineSize;
+        config.policy = policy;
+        return config;
+    }
+
+    public static HierarchyConfig load(Path path) throws IOException {
+        return parse(Files.readAllLines(path));
+    }
+
+    public static HierarchyConfig parse(List<String> lines) {
+        HierarchyConfig config = new HierarchyConfig();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            int comment = line.indexOf('#');
+            if (comment >= 0) line = line.substring(0, comment);
+            line = line.trim();
+            if (line.isEmpty()) continue;
+            String[] fields = line.split("\\s+");
+            try {
+                config.apply(fields);
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("line " + (i + 1) + ": " + e.getMessage());
+            }
+        }
+        if (config.levels.isEmpty()) throw new IllegalArgumentException("no levels defined");
+        return config;
+    }
+
+    private void apply(String[] fields) {
+        switch (fields[0]) {
+            case "level":
+                if (fields.length < 4 || fields.length > 6) throw new IllegalArgumentException("level takes 3 to 5 values");
+                WritePolicy writePolicy = WritePolicy.WRITE_BACK;
+                boolean offHeap = false;
+                for (int i = 4; i < fields.length; i++) {
+                    if (fields[i].equals("offheap")) offHeap = true;
+                    else writePolicy = writePolicy(fields[i]);
+                }
+                addLevel(positive(fields[1]), positive(fields[2]), nonNegative(fields[3]), writePolicy, offHeap);
+                break;
+            case "memory":
+                expectValues(fields, 1);
+                memoryLatency = nonNegative(fields[1]);
+                break;
+            case "line-size":
+                expectValues(fields, 1);
+                lineSize = positive(fields[1]);
+                if (Integer.bitCount(lineSize) != 1) throw new IllegalArgumentException("line size must be a power of two");
+                break;
+            case "inclusion":
+                expectValues(fields, 1);
+                try {
+                    policy = InclusionPolicy.valueOf(fields[1].toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    throw new IllegalArgumentException("unknown inclusion policy " + fields[1]);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("unknown setting " + fields[0]);
+        }
+    }
+
+    private void addLevel(int blocks, int ways, int latency, WritePolicy writePolicy) {
+        addLevel(blocks, ways, latency, writePolicy, false);
+    }
+
+    private void addLevel(int blocks, int ways, int latency, WritePolicy writePolicy, boolean offHeap) {
+        if (blocks % ways != 0) throw new IllegalArgumentException("blocks must be a multiple of ways: " + blocks + "/" + ways);
+        levels.add(new Level(blocks, ways, latency, writePolicy, offHeap));
+    }
+
+    private static WritePolicy writePolicy(String value) {
+        switch (value) {
+            case "wb": return WritePolicy.WRITE_BACK;
+            case "wt": return WritePolicy.WRITE_THROUGH;
+            default: throw new IllegalArgumentException("unknown write policy " + value + ", expected wb or wt");
+        }
+    }
+
+    private static void expectValues(String[] fields, int count) {
+        if (fields.length != count + 1) {
+            throw new IllegalArgumentException(fields[0] + " takes " + count + " value" + (count == 1 ? "" : "s"));
+        }
+    }
+
+    private static int positive(String value) {
+        int n = nonNegative(value);
+        if (n == 0) throw new IllegalArgumentException("expected a positive number, got " + value);
+        return n;
+    }
+
+    private static int nonNegative(String value) {
+        try {
+            int n = Integer.parseInt(value);
+            if (n >= 0) return n;
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException("expected a non-negative number, got " + value);
+    }
+
+    public MultiLevelCache build() {
+        CacheInterface[] caches = new CacheInterface[levels.size()];
+        int[] latencies = new int[levels.size()];
+        for (int i = 0; i < caches.length; i++) {
+            Level level = levels.get(i);
+            CacheGeometry geometry = new CacheGeometry(lineSize, level.blocks / level.ways, level.ways);
+            if (level.ways == 1) caches[i] = new DirectMappedCache(geometry, level.writePolicy);
+            else if (level.offHeap) caches[i] = new OffHeapSetAssociativeCache(geometry, level.writePolicy);
+            else caches[i] = new SetAssociativeCache(geometry, level.writePolicy);
+            latencies[i] = level.latency;
+        }
+        return new MultiLevelCache(caches, policy, latencies, memoryLatency);
+    }
+
+    public int getLevelCount() { return levels.size(); }
+    public int getBlocks(int level) { return levels.get(level).blocks; }
+    public int getWays(int level) { return levels.get(level).ways; }
+    public int getHitLatency(int level) { return levels.get(level).latency; }
+    public WritePolicy getWritePolicy(int level) { return levels.get(level).writePolicy; }
+    public boolean isOffHeap(int level) { return levels.get(level).offHeap; }
+    public int getMemoryLatency() { return memoryLatency; }
+    public int getLineSize() { return lineSize; }
+    public InclusionPolicy getPolicy() { return policy; }
+
+    private static class Level {
+        final int blocks;
+        final int ways;
+        final int latency;
+        final WritePolicy writePolicy;
+        final boolean offHeap;
+
+        Level(int blocks, int ways, int latency, WritePolicy writePolicy, boolean offHeap) {
+            this.blocks = blocks;
+            this.ways = ways;
+            this.latency = latency;
+            this.writePolicy = writePolicy;
+            this.offHeap = offHeap;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package Cache;
+
+//how the levels of a MultiLevelCache share lines
+public enum InclusionPolicy {
+    //every line in an upper level is also below it; evicting from a lower level back-invalidates the levels above
+    INCLUSIVE,
+    //a line lives in exactly one level; L1 victims move down a level instead of being dropped
+    EXCLUSIVE,
+    //non-inclusive, non-exclusive: fills go to every level and evictions are independent
+    NINE
+}
@@ -0,0 +1,69 @@
+package Cache;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+//evicts the line with the fewest hits since it was filled; ties go to the older fill
+public class LfuPolicy implements ReplacementPolicy, Snapshottable {
+    private int ways;
+    private int[] uses;
+    private long[] filledAt;
+    private long clock = 0;
+
+    @Override
+    public void init(int sets, int ways) {
+        this.ways = ways;
+        this.uses = new int[sets * ways];
+        this.filledAt = new long[sets * ways];
+    }
+
+    @Override
+    public void onHit(int set, int way) {
+        int slot = set * ways + way;
+        if (uses[slot] < Integer.MAX_VALUE) uses[slot]++;
+    }
+
+    @Override
+    public void onFill(int set, int way) {
+        int slot = set * ways + way;
+        uses[slot] = 0;
+        filledAt[slot] = ++clock;
+    }
+
+    @Override
+    public int victim(int set) {
+        int base = set * ways;
+        int victim = base;
+        for (int slot = base + 1; slot < base + ways; slot++) {
+            if (uses[slot] < uses[victim] || (uses[slot] == uses[victim] && filledAt[slot] < filledAt[victim])) victim = slot;
+        }
+        return victim - base;
+    }
+
+    @Override
+    public void reset() {
+        Arrays.fill(uses, 0);
+        Arrays.fill(filledAt, 0);
+        clock = 0;
+    }
+
+    @Override
+    public long stateSize() {
+        return 1 + Long.BYTES + (long) uses.length * (Integer.BYTES + Long.BYTES);
+    }
+
+    @Override
+    public void writeState(ByteBuffer out) {
+        out.put(CacheSnapshot.LFU_POLICY).putLong(clock);
+        CacheSnapshot.putInts(out, uses);
+        CacheSnapshot.putLongs(out, filledAt);
+    }
+
+    @Override
+    public void readState(ByteBuffer in) {
+        CacheSnapshot.checkPolicy(in, CacheSnapshot.LFU_POLICY);
+        clock = in.getLong();
+        CacheSnapshot.getInts(in, uses);
+        CacheSnapshot.getLongs(in, filledAt);
+    }
+}
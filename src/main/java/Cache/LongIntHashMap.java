@@ -0,0 +1,109 @@
+package Cache;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from long keys to non-negative int values, with linear probing
+ * and no boxing. Used on simulation hot paths where a HashMap<Long, Integer> would allocate.
+ */
+class LongIntHashMap {
+    static final int MISSING = -1;
+
+    private long[] keys;
+    private int[] values; // MISSING marks an empty slot
+    private int mask;
+    private int size = 0;
+
+    LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, MISSING);
+        mask = capacity - 1;
+    }
+
+    int get(long key) {
+        for (int i = slot(key); ; i = (i + 1) & mask) {
+            int value = values[i];
+            if (value == MISSING || keys[i] == key) return value;
+        }
+    }
+
+    void put(long key, int value) {
+        int i = slot(key);
+        while (values[i] != MISSING && keys[i] != key) i = (i + 1) & mask;
+        if (values[i] == MISSING) {
+            keys[i] = key;
+            if (++size > (mask + 1) / 2) {
+                values[i] = value;
+                grow();
+                return;
+            }
+        }
+        values[i] = value;
+    }
+
+    //removes the key, shifting later entries of its probe run back so lookups need no tombstones
+    int remove(long key) {
+        int i = slot(key);
+        while (values[i] != MISSING && keys[i] != key) i = (i + 1) & mask;
+        int removed = values[i];
+        if (removed == MISSING) return MISSING;
+        size--;
+        for (int j = (i + 1) & mask; values[j] != MISSING; j = (j + 1) & mask) {
+            int home = slot(keys[j]);
+            // j's entry may move into the hole at i only if its home slot is not in (i, j]
+            if (((j - home) & mask) >= ((j - i) & mask)) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        values[i] = MISSING;
+        return removed;
+    }
+
+    interface EntryVisitor {
+        void visit(long key, int value);
+    }
+
+    //visits every entry in table order
+    void forEach(EntryVisitor visitor) {
+        for (int i = 0; i < keys.length; i++) {
+            if (values[i] != MISSING) visitor.visit(keys[i], values[i]);
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    void clear() {
+        Arrays.fill(values, MISSING);
+        size = 0;
+    }
+
+    private int slot(long key) {
+        // murmur3 finaliser: sequential block addresses would otherwise cluster
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return (int) key & mask;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        Arrays.fill(values, MISSING);
+        mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldValues[i] == MISSING) continue;
+            int j = slot(oldKeys[i]);
+            while (values[j] != MISSING) j = (j + 1) & mask;
+            keys[j] = oldKeys[i];
+            values[j] = oldValues[i];
+        }
+    }
+}
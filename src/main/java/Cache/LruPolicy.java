@@ -0,0 +1,61 @@
+package Cache;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+//exact LRU through a last-use timestamp per way
+public class LruPolicy implements ReplacementPolicy, Snapshottable {
+    private int ways;
+    private long[] lastUsed;
+    private long clock = 0;
+
+    @Override
+    public void init(int sets, int ways) {
+        this.ways = ways;
+        this.lastUsed = new long[sets * ways];
+    }
+
+    @Override
+    public void onHit(int set, int way) {
+        lastUsed[set * ways + way] = ++clock;
+    }
+
+    @Override
+    public void onFill(int set, int way) {
+        lastUsed[set * ways + way] = ++clock;
+    }
+
+    @Override
+    public int victim(int set) {
+        int base = set * ways;
+        int victim = 0;
+        for (int w = 1; w < ways; w++) {
+            if (lastUsed[base + w] < lastUsed[base + victim]) victim = w;
+        }
+        return victim;
+    }
+
+    @Override
+    public void reset() {
+        Arrays.fill(lastUsed, 0);
+        clock = 0;
+    }
+
+    @Override
+    public long stateSize() {
+        return 1 + Long.BYTES + (long) lastUsed.length * Long.BYTES;
+    }
+
+    @Override
+    public void writeState(ByteBuffer out) {
+        out.put(CacheSnapshot.LRU_POLICY).putLong(clock);
+        CacheSnapshot.putLongs(out, lastUsed);
+    }
+
+    @Override
+    public void readState(ByteBuffer in) {
+        CacheSnapshot.checkPolicy(in, CacheSnapshot.LRU_POLICY);
+        clock = in.getLong();
+        CacheSnapshot.getLongs(in, lastUsed);
+    }
+}
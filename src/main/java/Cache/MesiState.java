@@ -0,0 +1,12 @@
+package Cache;
+
+//coherence state of a line in one core's private caches
+public enum MesiState {
+    //the only copy, and it differs from the shared cache
+    MODIFIED,
+    //the only copy, clean; a store upgrades it to MODIFIED without telling anyone
+    EXCLUSIVE,
+    //one of possibly several clean copies; a store must invalidate the others first
+    SHARED,
+    INVALID
+}
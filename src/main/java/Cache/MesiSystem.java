@@ -0,0 +1,197 @@
+package Cache;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Several cores, each with its own private caches, in front of one shared last-level cache,
+ * kept coherent with MESI through a directory. The directory holds, per line, the set of cores
+ * that have it and whether the single holder has it EXCLUSIVE or MODIFIED.
+ *
+ * A private miss is served by another core when that core holds the line EXCLUSIVE or MODIFIED
+ * (a cache-to-cache transfer; the owner drops to SHARED, or to INVALID for a store), otherwise by
+ * the shared cache. A store to a SHARED line is an upgrade that invalidates the other copies.
+ * Dirty data reaches the shared cache when a MODIFIED line leaves its core, or when another core
+ * reads it.
+ *
+ * A miss on a line this core lost to another core's store is a coherence miss. It also counts as
+ * false sharing when the missing access and the store that invalidated the line touched different
+ * 8-byte words of it.
+ *
+ * The private caches should be inclusive (e.g. an INCLUSIVE MultiLevelCache) so that the eviction
+ * they report is the line really leaving the core; the system installs its own eviction listener.
+ */
+public class MesiSystem {
+    public static final int MAX_CORES = 28;
+    private static final int EXCLUSIVE_BIT = 1 << 28;
+    private static final int MODIFIED_BIT = 1 << 29;
+    private static final int SHARERS = EXCLUSIVE_BIT - 1;
+    private static final int WORD_SHIFT = 3;
+
+    private final CacheInterface[] cores;
+    private final CacheInterface shared;
+    private final int lineSize;
+    private final LongIntHashMap directory = new LongIntHashMap(1 << 16);
+    private final LongIntHashMap[] lostLines;  // per core: line -> 1 + word of the store that invalidated it
+    private final LongIntHashMap coherenceMissesByLine = new LongIntHashMap(1 << 10);
+    private final LongIntHashMap falseSharingByLine = new LongIntHashMap(1 << 10);
+    private final long[] accesses;
+    private final long[] hits;
+    private final long[] coherenceMisses;
+    private final long[] falseSharingMisses;
+    private long invalidations = 0;
+    private long upgrades = 0;
+    private long cacheToCache = 0;
+    private long writeBacks = 0;
+
+    public static class HotLine {
+        public final long lineAddress;
+        public final int coherenceMisses;
+        public final int falseSharingMisses;
+
+        HotLine(long lineAddress, int coherenceMisses, int falseSharingMisses) {
+            this.lineAddress = lineAddress;
+            this.coherenceMisses = coherenceMisses;
+            this.falseSharingMisses = falseSharingMisses;
+        }
+    }
+
+    public MesiSystem(CacheInterface[] cores, CacheInterface shared) {
+        if (cores.length == 0 || cores.length > MAX_CORES) {
+            throw new IllegalArgumentException("Between 1 and " + MAX_CORES + " cores are supported");
+        }
+        this.cores = cores.clone();
+        this.shared = shared;
+        this.lineSize = shared.getLineSize();
+        for (CacheInterface core : cores) {
+            if (core.getLineSize() != lineSize) throw new IllegalArgumentException("All caches need the same line size");
+        }
+        this.lostLines = new LongIntHashMap[cores.length];
+        this.accesses = new long[cores.length];
+        this.hits = new long[cores.length];
+        this.coherenceMisses = new long[cores.length];
+        this.falseSharingMisses = new long[cores.length];
+        for (int i = 0; i < cores.length; i++) {
+            int core = i;
+            lostLines[i] = new LongIntHashMap(1 << 10);
+            cores[i].setEvictionListener((line, dirty) -> evicted(core, line));
+        }
+    }
+
+    //runs one access of one core; returns whether its private caches hit
+    public boolean access(int core, long address, boolean write) {
+        long line = address & -lineSize;
+        int bit = 1 << core;
+        int entry = entry(line);
+        accesses[core]++;
+        boolean hit = write ? cores[core].write(address) : cores[core].access(address);
+        if (hit) hits[core]++;
+
+        if ((entry & bit) == 0) {
+            countLostLine(core, line, address);
+            int others = entry & SHARERS;
+            if ((entry & (EXCLUSIVE_BIT | MODIFIED_BIT)) != 0) {
+                // the single owner supplies the line
+                cacheToCache++;
+                if ((entry & MODIFIED_BIT) != 0 && !write) writeBack(line);
+            } else {
+                shared.access(address);
+            }
+            if (write) {
+                invalidateOthers(core, others, line, address);
+                entry = bit | MODIFIED_BIT;
+            } else {
+                entry = others == 0 ? bit | EXCLUSIVE_BIT : others | bit;
+            }
+        } else if (write && (entry & MODIFIED_BIT) == 0) {
+            if ((entry & EXCLUSIVE_BIT) == 0) {
+                upgrades++;
+                invalidateOthers(core, entry & SHARERS & ~bit, line, address);
+            }
+            entry = bit | MODIFIED_BIT;
+        }
+        directory.put(line, entry);
+        return hit;
+    }
+
+    private int entry(long line) {
+        int entry = directory.get(line);
+        return entry == LongIntHashMap.MISSING ? 0 : entry;
+    }
+
+    private void invalidateOthers(int core, int others, long line, long address) {
+        int word = (int) (address & (lineSize - 1)) >>> WORD_SHIFT;
+        for (int other = 0; other < cores.length; other++) {
+            if (other == core || (others & (1 << other)) == 0) continue;
+            cores[other].invalidate(line);
+            lostLines[other].put(line, word + 1);
+            invalidations++;
+        }
+    }
+
+    //a miss on a line another core's store took away is a coherence miss
+    private void countLostLine(int core, long line, long address) {
+        int lostWord = lostLines[core].get(line);
+        if (lostWord <= 0) return;
+        lostLines[core].put(line, 0);
+        coherenceMisses[core]++;
+        increment(coherenceMissesByLine, line);
+        int word = (int) (address & (lineSize - 1)) >>> WORD_SHIFT;
+        if (word + 1 != lostWord) {
+            falseSharingMisses[core]++;
+            increment(falseSharingByLine, line);
+        }
+    }
+
+    private static void increment(LongIntHashMap counts, long key) {
+        int count = counts.get(key);
+        counts.put(key, count == LongIntHashMap.MISSING ? 1 : count + 1);
+    }
+
+    //the line left the core's private caches
+    private void evicted(int core, long line) {
+        int entry = entry(line);
+        int bit = 1 << core;
+        if ((entry & bit) == 0) return;
+        if ((entry & MODIFIED_BIT) != 0) writeBack(line);
+        int others = entry & SHARERS & ~bit;
+        directory.put(line, others);
+    }
+
+    private void writeBack(long line) {
+        shared.install(line, true);
+        writeBacks++;
+    }
+
+    public MesiState getState(int core, long address) {
+        int entry = entry(address & -lineSize);
+        if ((entry & (1 << core)) == 0) return MesiState.INVALID;
+        if ((entry & MODIFIED_BIT) != 0) return MesiState.MODIFIED;
+        if ((entry & EXCLUSIVE_BIT) != 0) return MesiState.EXCLUSIVE;
+        return MesiState.SHARED;
+    }
+
+    //lines with the most coherence misses, most first
+    public List<HotLine> getHotLines(int limit) {
+        List<HotLine> lines = new ArrayList<>();
+        coherenceMissesByLine.forEach((line, misses) -> {
+            int falseSharing = falseSharingByLine.get(line);
+            lines.add(new HotLine(line, misses, Math.max(0, falseSharing)));
+        });
+        lines.sort((a, b) -> a.coherenceMisses != b.coherenceMisses
+                ? Integer.compare(b.coherenceMisses, a.coherenceMisses) : Long.compareUnsigned(a.lineAddress, b.lineAddress));
+        return lines.subList(0, Math.min(limit, lines.size()));
+    }
+
+    public int getCoreCount() { return cores.length; }
+    public CacheInterface getCore(int core) { return cores[core]; }
+    public CacheInterface getSharedCache() { return shared; }
+    public long getAccessCount(int core) { return accesses[core]; }
+    public long getHitCount(int core) { return hits[core]; }
+    public long getCoherenceMissCount(int core) { return coherenceMisses[core]; }
+    public long getFalseSharingMissCount(int core) { return falseSharingMisses[core]; }
+    public long getInvalidationCount() { return invalidations; }
+    public long getUpgradeCount() { return upgrades; }
+    public long getCacheToCacheCount() { return cacheToCache; }
+    public long getWriteBackCount() { return writeBacks; }
+}
@@ -0,0 +1,195 @@
+package Cache;
+
+import java.util.Arrays;
+
+/**
+ * Wraps a cache and sorts each of its demand misses into the three Cs:
+ * compulsory (first touch of the line), capacity (a fully-associative LRU cache of the same size
+ * misses too) or conflict (only the real cache's mapping and replacement caused it).
+ * Many conflict misses call for more ways; many capacity misses for a bigger cache.
+ *
+ * The shadow is a FullyAssociativeCache with the wrapped cache's block count, line size and write
+ * policy, and first touches are tracked in a primitive hash set, so the overhead is bounded by
+ * the cache size plus the number of distinct lines. Counts are also kept per set of the wrapped
+ * cache, or for a single set when it is not SetMapped.
+ */
+public class MissClassifier implements CacheInterface {
+    private final CacheInterface cache;
+    private final SetMapped mapping;
+    private final FullyAssociativeCache shadow;
+    private final LongIntHashMap touched = new LongIntHashMap(1 << 16);
+    private final int lineSize;
+    private final long[] compulsory;
+    private final long[] capacity;
+    private final long[] conflict;
+    private long compulsoryTotal = 0;
+    private long capacityTotal = 0;
+    private long conflictTotal = 0;
+
+    public MissClassifier(CacheInterface cache) {
+        this.cache = cache;
+        CacheInterface base = cache instanceof PrefetchingCache ? ((PrefetchingCache) cache).getCache() : cache;
+        this.mapping = base instanceof SetMapped ? (SetMapped) base : null;
+        this.lineSize = cache.getLineSize();
+        this.shadow = new FullyAssociativeCache(new CacheGeometry(lineSize, 1, cache.getBlockCount()), cache.getWritePolicy());
+        int sets = mapping == null ? 1 : mapping.getSetCount();
+        this.compulsory = new long[sets];
+        this.capacity = new long[sets];
+        this.conflict = new long[sets];
+    }
+
+    @Override
+    public boolean access(long address) {
+        boolean shadowHit = shadow.access(address);
+        boolean hit = cache.access(address);
+        if (!hit) classify(address, shadowHit);
+        return hit;
+    }
+
+    @Override
+    public boolean write(long address) {
+        boolean shadowHit = shadow.write(address);
+        boolean hit = cache.write(address);
+        if (!hit) classify(address, shadowHit);
+        return hit;
+    }
+
+    @Override
+    public boolean lookup(long address) {
+        boolean shadowHit = shadow.lookup(address);
+        boolean hit = cache.lookup(address);
+        if (!hit) classify(address, shadowHit);
+        return hit;
+    }
+
+    private void classify(long address, boolean shadowHit) {
+        int set = mapping == null ? 0 : mapping.setIndexOf(address);
+        long line = address & -lineSize;
+        if (touched.get(line) == LongIntHashMap.MISSING) {
+            touched.put(line, 1);
+            compulsory[set]++;
+            compulsoryTotal++;
+        } else if (shadowHit) {
+            conflict[set]++;
+            conflictTotal++;
+        } else {
+            capacity[set]++;
+            capacityTotal++;
+        }
+    }
+
+    // a hit never consults touched, so it has to record the line too (e.g. one brought in by a fill)
+    @Override
+    public void fill(long address) {
+        cache.fill(address);
+        shadow.fill(address);
+        touched.put(address & -lineSize, 1);
+    }
+
+    @Override
+    public void install(long address, boolean dirty) {
+        cache.install(address, dirty);
+        shadow.install(address, dirty);
+        touched.put(address & -lineSize, 1);
+    }
+
+    @Override
+    public boolean invalidate(long address) {
+        shadow.invalidate(address);
+        return cache.invalidate(address);
+    }
+
+    @Override
+    public boolean isDirty(long address) {
+        return cache.isDirty(address);
+    }
+
+    @Override
+    public boolean contains(long address) {
+        return cache.contains(address);
+    }
+
+    @Override
+    public void setEvictionListener(EvictionListener listener) {
+        cache.setEvictionListener(listener);
+    }
+
+    @Override
+    public int getHitCount() {
+        return cache.getHitCount();
+    }
+
+    @Override
+    public int getMissCount() {
+        return cache.getMissCount();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return cache.getBytesRead();
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return cache.getBytesWritten();
+    }
+
+    @Override
+    public WritePolicy getWritePolicy() {
+        return cache.getWritePolicy();
+    }
+
+    @Override
+    public int getLineSize() {
+        return lineSize;
+    }
+
+    @Override
+    public void reset() {
+        cache.reset();
+        shadow.reset();
+        touched.clear();
+        resetCounts();
+    }
+
+    //the shadow and the first-touch set keep their contents
+    @Override
+    public void resetStats() {
+        cache.resetStats();
+        shadow.resetStats();
+        resetCounts();
+    }
+
+    private void resetCounts() {
+        Arrays.fill(compulsory, 0);
+        Arrays.fill(capacity, 0);
+        Arrays.fill(conflict, 0);
+        compulsoryTotal = 0;
+        capacityTotal = 0;
+        conflictTotal = 0;
+    }
+
+    @Override
+    public CacheBlock[] getBlocks() {
+        return cache.getBlocks();
+    }
+
+    @Override
+    public int getLastAccessedIndex() {
+        return cache.getLastAccessedIndex();
+    }
+
+    @Override
+    public int getBlockCount() {
+        return cache.getBlockCount();
+    }
+
+    public CacheInterface getCache() { return cache; }
+    public long getCompulsoryMissCount() { return compulsoryTotal; }
+    public long getCapacityMissCount() { return capacityTotal; }
+    public long getConflictMissCount() { return conflictTotal; }
+    public int getSetCount() { return compulsory.length; }
+    public long getCompulsoryMissCount(int set) { return compulsory[set]; }
+    public long getCapacityMissCount(int set) { return capacity[set]; }
+    public long getConflictMissCount(int set) { return conflict[set]; }
+}
@@ -1,42 +1,221 @@
 package Cache;
 
-public class MultiLevelCache implements CacheInterface {
-    private final CacheInterface L1Cache;
-    private final CacheInterface L2Cache;
-    private final CacheInterface L3Cache;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * L1 -> L2 -> ... -> Ln hierarchy. An access looks each level up in turn (counting a hit or miss in
+ * that level's own counters) and then fills lines according to the inclusion policy, using the
+ * levels' fill/invalidate/eviction contract. The hierarchy's own hit and miss counts are per
+ * access: a hit at any level is one hit, and a miss means the line came from memory.
+ *
+ * The hierarchy installs its own eviction listener on every level.
+ *
+ * Stores follow each level's write policy: write-through levels at the top pass the store on
+ * without allocating, and the first write-back level below them allocates the line and keeps it
+ * dirty. A dirty victim is written to the next write-back level (or to memory). Traffic between
+ * each level and the one below it is counted here, not by the levels themselves.
+ *
+ * Timing follows a serial lookup: every level an access reaches costs that level's hit latency,
+ * and a miss in all of them adds the memory latency on top, so cycles per level and the average
+ * memory access time fall out of how many accesses were served at each level.
+ */
+public class MultiLevelCache implements CacheInterface, Snapshottable {
+    public static final int[] DEFAULT_HIT_LATENCIES = {4, 12, 40};
+    public static final int DEFAULT_MEMORY_LATENCY = 200;
+
+    private final CacheInterface[] levels;
+    private final String[] levelNames;
+    private final InclusionPolicy policy;
+    private final int[] hitLatencies;
+    private final int memoryLatency;
+    private final long[] served; // accesses served by each level, the last slot is memory
+    private final long[] bytesRead;    // per level, from the level below
+    private final long[] bytesWritten; // per level, to the level below
+    private long memoryRead = 0;
+    private long memoryWritten = 0;
+    private int hitCount = 0;
+    private int missCount = 0;
+    private long backInvalidations = 0;
     private int lastIndexAccessed = -1;
     private boolean lastAccessWasHit = false;
     private String lastHitLevel = "MISS";
+    private EvictionListener evictionListener;
 
     public MultiLevelCache(CacheInterface l1, CacheInterface l2, CacheInterface l3) {
-        this.L1Cache = l1;
-        this.L2Cache = l2;
-        this.L3Cache = l3;
+        this(l1, l2, l3, InclusionPolicy.NINE);
+    }
+
+    public MultiLevelCache(CacheInterface l1, CacheInterface l2, CacheInterface l3, InclusionPolicy policy) {
+        this(new CacheInterface[]{l1, l2, l3}, policy, DEFAULT_HIT_LATENCIES, DEFAULT_MEMORY_LATENCY);
+    }
+
+    public MultiLevelCache(CacheInterface[] levels, InclusionPolicy policy, int[] hitLatencies, int memoryLatency) {
+        if (levels.length == 0) throw new IllegalArgumentException("A hierarchy needs at least one level");
+        if (hitLatencies.length != levels.length) {
+            throw new IllegalArgumentException("Expected " + levels.length + " hit latencies, got " + hitLatencies.length);
+        }
+        if (policy == InclusionPolicy.EXCLUSIVE) {
+            for (CacheInterface level : levels) {
+                if (level.getWritePolicy() != WritePolicy.WRITE_BACK) {
+                    throw new IllegalArgumentException("An exclusive hierarchy needs write-back levels");
+                }
+            }
+        }
+        this.levels = levels.clone();
+        this.policy = policy;
+        this.hitLatencies = hitLatencies.clone();
+        this.memoryLatency = memoryLatency;
+        this.served = new long[levels.length + 1];
+        this.bytesRead = new long[levels.length];
+        this.bytesWritten = new long[levels.length];
+        this.levelNames = new String[levels.length];
+        for (int i = 0; i < levels.length; i++) {
+            levelNames[i] = "L" + (i + 1);
+            int level = i;
+            levels[i].setEvictionListener((line, dirty) -> evictedFrom(level, line, dirty));
+        }
+    }
+
+    private void evictedFrom(int level, long line, boolean dirty) {
+        switch (policy) {
+            case INCLUSIVE:
+                for (int upper = 0; upper < level; upper++) {
+                    // a newer copy above leaves with the victim
+                    if (levels[upper].isDirty(line)) dirty = true;
+                    if (levels[upper].invalidate(line)) backInvalidations++;
+                }
+                break;
+            case EXCLUSIVE:
+                if (level + 1 < levels.length) {
+                    bytesWritten[level] += levels[level].getLineSize();
+                    levels[level + 1].install(line, dirty);
+                    return;
+                }
+                break;
+            case NINE:
+                break;
+        }
+        if (dirty) writeBack(level, line);
+        if (level == levels.length - 1 && evictionListener != null) evictionListener.evicted(line, dirty);
+    }
+
+    //sends a dirty line down: write-through levels pass it on, the first write-back level keeps it
+    private void writeBack(int level, long line) {
+        bytesWritten[level] += levels[level].getLineSize();
+        for (int lower = level + 1; lower < levels.length; lower++) {
+            if (levels[lower].getWritePolicy() == WritePolicy.WRITE_BACK) {
+                levels[lower].install(line, true);
+                return;
+            }
+            bytesWritten[lower] += levels[lower].getLineSize();
+        }
+        memoryWritten += levels[levels.length - 1].getLineSize();
+    }
+
+    public boolean access(long address) {
+        int hitLevel = find(address);
+        bringUp(address, hitLevel, 0);
+        return hitLevel >= 0;
     }
 
-    public boolean access(int address) {
-        if (L1Cache.access(address)) {
-            lastHitLevel = "L1";
-            return true;
+    public boolean write(long address) {
+        int hitLevel = find(address);
+        int top = 0;
+        while (top < levels.length && levels[top].getWritePolicy() == WritePolicy.WRITE_THROUGH) {
+            bytesWritten[top] += WritePolicy.storeBytes(levels[top].getLineSize());
+            top++;
         }
-        if (L2Cache.access(address)) {
-            L1Cache.insert(String.valueOf(address));
-            lastHitLevel = "L2";
-            return true;
+        if (top == levels.length) {
+            memoryWritten += WritePolicy.storeBytes(levels[top - 1].getLineSize());
+        } else {
+            bringUp(address, hitLevel, top);
+            levels[top].install(address, true);
         }
-        if (L3Cache.access(address)) {
-            L2Cache.insert(String.valueOf(address));
-            L1Cache.insert(String.valueOf(address));
-            lastHitLevel = "L3";
-            return true;
+        return hitLevel >= 0;
+    }
+
+    //makes the line present from level top down to where it was found, following the inclusion policy
+    private void bringUp(long address, int hitLevel, int top) {
+        if (hitLevel < 0) memoryRead += levels[levels.length - 1].getLineSize();
+        if (policy == InclusionPolicy.EXCLUSIVE) {
+            if (hitLevel == 0) return;
+            boolean dirty = hitLevel > 0 && levels[hitLevel].isDirty(address);
+            if (hitLevel > 0) levels[hitLevel].invalidate(address);
+            levels[0].fill(address);
+            if (dirty) levels[0].install(address, true);
+            bytesRead[0] += levels[0].getLineSize();
+        } else {
+            int missed = hitLevel < 0 ? levels.length : hitLevel;
+            for (int level = missed - 1; level >= top; level--) {
+                levels[level].fill(address);
+                bytesRead[level] += levels[level].getLineSize();
+            }
+        }
+    }
+
+    public boolean lookup(long address) {
+        return find(address) >= 0;
+    }
+
+    //looks the levels up in order; returns the level that hit, or -1 for memory
+    private int find(long address) {
+        for (int level = 0; level < levels.length; level++) {
+            if (levels[level].lookup(address)) {
+                lastHitLevel = levelNames[level];
+                lastAccessWasHit = true;
+                hitCount++;
+                served[level]++;
+                return level;
+            }
         }
-        L3Cache.insert(String.valueOf(address));
-        L2Cache.insert(String.valueOf(address));
-        L1Cache.insert(String.valueOf(address));
         lastHitLevel = "MISS";
+        lastAccessWasHit = false;
+        missCount++;
+        served[levels.length]++;
+        return -1;
+    }
+
+    public void fill(long address) {
+        if (policy == InclusionPolicy.EXCLUSIVE) {
+            levels[0].fill(address);
+        } else {
+            for (int level = levels.length - 1; level >= 0; level--) levels[level].fill(address);
+        }
+    }
+
+    public void install(long address, boolean dirty) {
+        if (policy != InclusionPolicy.EXCLUSIVE) {
+            for (int level = levels.length - 1; level > 0; level--) levels[level].fill(address);
+        }
+        levels[0].install(address, dirty);
+    }
+
+    public boolean contains(long address) {
+        for (CacheInterface level : levels) {
+            if (level.contains(address)) return true;
+        }
+        return false;
+    }
+
+    public boolean isDirty(long address) {
+        for (CacheInterface level : levels) {
+            if (level.isDirty(address)) return true;
+        }
         return false;
     }
 
+    public boolean invalidate(long address) {
+        boolean present = false;
+        for (CacheInterface level : levels) present |= level.invalidate(address);
+        return present;
+    }
+
+    //only lines leaving the last level, i.e. going back to memory, are reported
+    public void setEvictionListener(EvictionListener listener) {
+        this.evictionListener = listener;
+    }
+
     @Override
     public int getLastAccessedIndex() {
         return lastIndexAccessed;
@@ -50,47 +229,185 @@ public class MultiLevelCache implements CacheInterface {
         return lastHitLevel;
     }
 
+    //accesses served by some level; each access counts once
     @Override
-    public void insert(String address) {
-        int addr = address.startsWith("0x") ? Integer.parseInt(address.substring(2), 16) : Integer.parseInt(address);
-        access(addr);
+    public int getHitCount() {
+        return hitCount;
     }
 
+    //accesses that missed every level and went to memory
     @Override
-    public int getHitCount() {
-        return L1Cache.getHitCount() + L2Cache.getHitCount() + L3Cache.getHitCount();
+    public int getMissCount() {
+        return missCount;
+    }
+
+    //hits and misses of one level (0 = L1) as seen by the accesses that reached it
+    public int getLevelHitCount(int level) {
+        return levels[level].getHitCount();
+    }
+
+    public int getLevelMissCount(int level) {
+        return levels[level].getMissCount();
+    }
+
+    public int getLevelCount() {
+        return levels.length;
     }
 
+    public CacheInterface getLevel(int level) {
+        return levels[level];
+    }
+
+    public int getHitLatency(int level) {
+        return hitLatencies[level];
+    }
+
+    public int getMemoryLatency() {
+        return memoryLatency;
+    }
+
+    //accesses that got as far as this level, i.e. missed every level above it
+    public long getLevelAccessCount(int level) {
+        long reached = 0;
+        for (int i = level; i < served.length; i++) reached += served[i];
+        return reached;
+    }
+
+    public long getLevelCycles(int level) {
+        return getLevelAccessCount(level) * hitLatencies[level];
+    }
+
+    public long getMemoryCycles() {
+        return served[levels.length] * memoryLatency;
+    }
+
+    public long getTotalCycles() {
+        long cycles = getMemoryCycles();
+        for (int level = 0; level < levels.length; level++) cycles += getLevelCycles(level);
+        return cycles;
+    }
+
+    //average memory access time in cycles
+    public double getAverageAccessTime() {
+        long accesses = getLevelAccessCount(0);
+        return accesses == 0 ? 0.0 : (double) getTotalCycles() / accesses;
+    }
+
+    public long getBackInvalidationCount() {
+        return backInvalidations;
+    }
+
+    public InclusionPolicy getPolicy() {
+        return policy;
+    }
+
+    //bytes moved between memory and the last level
     @Override
-    public int getMissCount() {
-        return L1Cache.getMissCount() + L2Cache.getMissCount() + L3Cache.getMissCount();
+    public long getBytesRead() {
+        return memoryRead;
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return memoryWritten;
+    }
+
+    //bytes the level fetched from / sent to the level below it (memory for the last level)
+    public long getLevelBytesRead(int level) {
+        return bytesRead[level];
+    }
+
+    public long getLevelBytesWritten(int level) {
+        return bytesWritten[level];
+    }
+
+    //the policy stores see first
+    @Override
+    public WritePolicy getWritePolicy() {
+        return levels[0].getWritePolicy();
+    }
+
+    @Override
+    public int getLineSize() {
+        return levels[0].getLineSize();
     }
 
     @Override
     public void reset() {
-        L1Cache.reset();
-        L2Cache.reset();
-        L3Cache.reset();
+        for (CacheInterface level : levels) level.reset();
+        clearStats();
         lastIndexAccessed = -1;
         lastAccessWasHit = false;
         lastHitLevel = "MISS";
     }
 
     @Override
-    public CacheBlock[] getBlocks() {
-        return L1Cache.getBlocks();
+    public void resetStats() {
+        for (CacheInterface level : levels) level.resetStats();
+        clearStats();
     }
 
-    public CacheBlock[] getL1Blocks() { return L1Cache.getBlocks(); }
-    public CacheBlock[] getL2Blocks() { return L2Cache.getBlocks(); }
-    public CacheBlock[] getL3Blocks() { return L3Cache.getBlocks(); }
+    private void clearStats() {
+        Arrays.fill(served, 0);
+        Arrays.fill(bytesRead, 0);
+        Arrays.fill(bytesWritten, 0);
+        memoryRead = 0;
+        memoryWritten = 0;
+        hitCount = 0;
+        missCount = 0;
+        backInvalidations = 0;
+    }
 
-    public int getL1BlockCount() { return L1Cache.getBlockCount(); }
-    public int getL2BlockCount() { return L2Cache.getBlockCount(); }
-    public int getL3BlockCount() { return L3Cache.getBlockCount(); }
+    @Override
+    public CacheBlock[] getBlocks() {
+        return levels[0].getBlocks();
+    }
 
     @Override
     public int getBlockCount() {
-        return L1Cache.getBlockCount();
+        return levels[0].getBlockCount();
+    }
+
+    //kind, level count and policy, the hierarchy's counters, then every level's own state from L1 down
+    @Override
+    public long stateSize() {
+        long size = 1 + 2 * Integer.BYTES + (3L * levels.length + 4) * Long.BYTES + 3 * Integer.BYTES;
+        for (CacheInterface level : levels) size += ((Snapshottable) level).stateSize();
+        return size;
+    }
+
+    @Override
+    public void writeState(ByteBuffer out) {
+        out.put(CacheSnapshot.MULTI_LEVEL);
+        out.putInt(levels.length);
+        out.putInt(policy.ordinal());
+        for (long count : served) out.putLong(count);
+        for (int level = 0; level < levels.length; level++) out.putLong(bytesRead[level]).putLong(bytesWritten[level]);
+        out.putLong(memoryRead).putLong(memoryWritten).putLong(backInvalidations);
+        out.putInt(hitCount).putInt(missCount).putInt(lastIndexAccessed);
+        for (CacheInterface level : levels) ((Snapshottable) level).writeState(out);
+    }
+
+    @Override
+    public void readState(ByteBuffer in) {
+        if (in.get() != CacheSnapshot.MULTI_LEVEL) throw new IllegalArgumentException("Snapshot holds a different kind of cache");
+        int count = in.getInt();
+        int savedPolicy = in.getInt();
+        if (count != levels.length || savedPolicy != policy.ordinal()) {
+            throw new IllegalArgumentException("Snapshot of a " + count + "-level hierarchy does not fit this " + levels.length
+                    + "-level " + policy + " one");
+        }
+        for (int i = 0; i < served.length; i++) served[i] = in.getLong();
+        for (int level = 0; level < levels.length; level++) {
+            bytesRead[level] = in.getLong();
+            bytesWritten[level] = in.getLong();
+        }
+        memoryRead = in.getLong();
+        memoryWritten = in.getLong();
+        backInvalidations = in.getLong();
+        hitCount = in.getInt();
+        missCount = in.getInt();
+        lastIndexAccessed = in.getInt();
+        for (CacheInterface level : levels) ((Snapshottable) level).readState(in);
     }
 }
@@ -0,0 +1,33 @@
+package Cache;
+
+//on a miss, or the first hit on a prefetched line, fetches the next lines after it
+public class NextLinePrefetcher implements Prefetcher {
+    private final int lineSize;
+    private final int degree;
+    private final int distance;
+
+    public NextLinePrefetcher(int lineSize, int degree, int distance) {
+        if (degree <= 0 || distance <= 0) throw new IllegalArgumentException("Degree and distance must be positive");
+        this.lineSize = lineSize;
+        this.degree = degree;
+        this.distance = distance;
+    }
+
+    @Override
+    public int onAccess(long address, boolean hit, boolean prefetchHit, long[] out) {
+        if (hit && !prefetchHit) return 0;
+        long line = address & -lineSize;
+        int n = Math.min(degree, out.length);
+        for (int i = 0; i < n; i++) out[i] = line + (long) (distance + i) * lineSize;
+        return n;
+    }
+
+    @Override
+    public int getDegree() {
+        return degree;
+    }
+
+    @Override
+    public void reset() {
+    }
+}
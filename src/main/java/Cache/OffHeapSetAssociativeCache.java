@@ -0,0 +1,413 @@
+package Cache;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Set-associative LRU cache whose whole state lives in one direct ByteBuffer, so a
+ * last-level-cache-sized model costs no heap objects and no GC work. Hits and misses are
+ * identical to SetAssociativeCache.
+ *
+ * Layout, for slot = set * ways + way: a tag region of 8 bytes per slot, followed by a meta region
+ * of 2 bytes per slot holding the valid and dirty bits and the way's LRU rank (0 = MRU) in the
+ * upper bits. Valid ways of a set always hold ranks 0..n-1. The footprint is exactly
+ * BYTES_PER_SLOT * sets * ways bytes.
+ */
+public class OffHeapSetAssociativeCache implements CacheInterface, SetMapped, Snapshottable {
+    public static final int BYTES_PER_SLOT = 10;
+    public static final int MAX_WAYS = 1 << 14;
+    private static final int VALID = 1;
+    private static final int DIRTY = 2;
+    private static final int RANK_SHIFT = 2;
+
+    private final int sets;
+    private final int ways;
+    private final CacheGeometry geometry;
+    private final WritePolicy writePolicy;
+    private final ByteBuffer state;
+    private final int metaBase;
+    private int lastSlot;          // slot hit or filled by the last touch()
+    private boolean victimDirty;   // whether the last touch() evicted a dirty line
+    private long bytesRead = 0;
+    private long bytesWritten = 0;
+    private int hitCount = 0;
+    private int missCount = 0;
+    private int lastAccessedSet = -1;
+    private volatile SetChangeListener changeListener; // swapped by the UI thread while a simulation runs
+    private EvictionListener evictionListener;
+    private SetStats setStats;
+
+    public OffHeapSetAssociativeCache(CacheGeometry geometry) {
+        this(geometry, WritePolicy.WRITE_BACK);
+    }
+
+    public OffHeapSetAssociativeCache(CacheGeometry geometry, WritePolicy writePolicy) {
+        if (geometry.getWays() > MAX_WAYS) throw new IllegalArgumentException("At most " + MAX_WAYS + " ways: " + geometry);
+        long bytes = (long) BYTES_PER_SLOT * geometry.getBlockCount();
+        if (bytes > Integer.MAX_VALUE) throw new IllegalArgumentException("Too large for one buffer: " + geometry);
+        this.geometry = geometry;
+        this.writePolicy = writePolicy;
+        this.ways = geometry.getWays();
+        this.sets = geometry.getSets();
+        this.metaBase = sets * ways * Long.BYTES;
+        this.state = ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder());
+    }
+
+    private long tag(int slot) {
+        return state.getLong(slot * Long.BYTES);
+    }
+
+    private int meta(int slot) {
+        return state.getShort(metaBase + slot * 2) & 0xFFFF;
+    }
+
+    private void setMeta(int slot, int meta) {
+        state.putShort(metaBase + slot * 2, (short) meta);
+    }
+
+    @Override
+    public boolean access(long address) {
+        int index = geometry.setIndex(address);
+        lastAccessedSet = index;
+        boolean hit = touch(index, geometry.tag(address), true);
+        record(index, address, hit);
+        if (hit) {
+            hitCount++;
+            return true;
+        }
+        missCount++;
+        countMiss();
+        return false;
+    }
+
+    @Override
+    public boolean write(long address) {
+        int index = geometry.setIndex(address);
+        lastAccessedSet = index;
+        boolean allocate = writePolicy == WritePolicy.WRITE_BACK;
+        boolean hit = touch(index, geometry.tag(address), allocate);
+        record(index, address, hit);
+        if (hit) {
+            hitCount++;
+        } else {
+            missCount++;
+        }
+        if (allocate) {
+            if (!hit) countMiss();
+            markDirty(index);
+        } else {
+            bytesWritten += WritePolicy.storeBytes(geometry.getLineSize());
+        }
+        return hit;
+    }
+
+    //a line fetched from the next level, plus the write-back of a dirty victim
+    private void countMiss() {
+        bytesRead += geometry.getLineSize();
+        if (victimDirty) bytesWritten += geometry.getLineSize();
+    }
+
+    private void record(int index, long address, boolean hit) {
+        if (setStats != null) setStats.access(index, geometry.blockAddress(address), hit);
+    }
+
+    @Override
+    public boolean lookup(long address) {
+        int index = geometry.setIndex(address);
+        lastAccessedSet = index;
+        boolean hit = touch(index, geometry.tag(address), false);
+        record(index, address, hit);
+        if (hit) hitCount++;
+        else missCount++;
+        return hit;
+    }
+
+    @Override
+    public void fill(long address) {
+        touch(geometry.setIndex(address), geometry.tag(address), true);
+    }
+
+    @Override
+    public void install(long address, boolean dirty) {
+        int index = geometry.setIndex(address);
+        touch(index, geometry.tag(address), true);
+        if (dirty) markDirty(index);
+    }
+
+    private void markDirty(int index) {
+        int meta = meta(lastSlot);
+        if ((meta & DIRTY) != 0) return;
+        setMeta(lastSlot, meta | DIRTY);
+        SetChangeListener listener = changeListener;
+        if (listener != null) listener.setChanged(index);
+    }
+
+    /**
+     * Makes the tag MRU if present. Otherwise, if allocate is set, puts a clean line in the first
+     * invalid way, or in the LRU way when the set is full. Returns whether the tag was present;
+     * lastSlot and victimDirty describe what happened.
+     */
+    private boolean touch(int index, long tag, boolean allocate) {
+        int base = index * ways;
+        int free = -1;
+        int lru = -1;
+        int valid = 0;
+        for (int i = base, end = base + ways; i < end; i++) {
+            int meta = meta(i);
+            if ((meta & VALID) == 0) {
+                if (free < 0) free = i;
+                continue;
+            }
+            valid++;
+            if (tag(i) == tag) {
+                promote(base, i, meta >>> RANK_SHIFT);
+                lastSlot = i;
+                return true;
+            }
+            if (meta >>> RANK_SHIFT == ways - 1) lru = i;
+        }
+        if (!allocate) return false;
+        int victim;
+        if (free >= 0) {
+            victim = free;
+            victimDirty = false;
+            setMeta(victim, VALID | valid << RANK_SHIFT); // ranked below every valid way, then promoted
+        } else {
+            victim = lru;
+            victimDirty = (meta(victim) & DIRTY) != 0;
+            if (setStats != null) setStats.evicted(index);
+            if (evictionListener != null) evictionListener.evicted(geometry.lineAddress(tag(victim), index), victimDirty);
+            setMeta(victim, VALID | (ways - 1) << RANK_SHIFT);
+        }
+        state.putLong(victim * Long.BYTES, tag);
+        promote(base, victim, meta(victim) >>> RANK_SHIFT);
+        lastSlot = victim;
+        SetChangeListener listener = changeListener;
+        if (listener != null) listener.setChanged(index);
+        return false;
+    }
+
+    //gives the slot rank 0, ageing every valid way that was more recent than it
+    private void promote(int base, int slot, int rank) {
+        if (rank == 0) return;
+        for (int i = base, end = base + ways; i < end; i++) {
+            int meta = meta(i);
+            if ((meta & VALID) != 0 && meta >>> RANK_SHIFT < rank) setMeta(i, meta + (1 << RANK_SHIFT));
+        }
+        setMeta(slot, meta(slot) & (VALID | DIRTY));
+    }
+
+    @Override
+    public boolean invalidate(long address) {
+        int index = geometry.setIndex(address);
+        long tag = geometry.tag(address);
+        int base = index * ways;
+        for (int i = base, end = base + ways; i < end; i++) {
+            int meta = meta(i);
+            if ((meta & VALID) == 0 || tag(i) != tag) continue;
+            int rank = meta >>> RANK_SHIFT;
+            setMeta(i, 0);
+            // close the gap so valid ranks stay 0..n-1
+            for (int j = base; j < end; j++) {
+                int other = meta(j);
+                if ((other & VALID) != 0 && other >>> RANK_SHIFT > rank) setMeta(j, other - (1 << RANK_SHIFT));
+            }
+            SetChangeListener listener = changeListener;
+            if (listener != null) listener.setChanged(index);
+            return true;
+        }
+        return false;
+    }
+
+    private int find(long address) {
+        int index = geometry.setIndex(address);
+        long tag = geometry.tag(address);
+        for (int i = index * ways, end = i + ways; i < end; i++) {
+            if ((meta(i) & VALID) != 0 && tag(i) == tag) return i;
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean contains(long address) {
+        return find(address) >= 0;
+    }
+
+    @Override
+    public boolean isDirty(long address) {
+        int slot = find(address);
+        return slot >= 0 && (meta(slot) & DIRTY) != 0;
+    }
+
+    @Override
+    public void setEvictionListener(EvictionListener listener) {
+        this.evictionListener = listener;
+    }
+
+    @Override
+    public void reset() {
+        hitCount = 0;
+        missCount = 0;
+        lastAccessedSet = -1;
+        bytesRead = 0;
+        bytesWritten = 0;
+        for (int slot = 0; slot < sets * ways; slot++) setMeta(slot, 0);
+        if (setStats != null) setStats.reset();
+        SetChangeListener listener = changeListener;
+        if (listener != null) {
+            for (int i = 0; i < sets; i++) listener.setChanged(i);
+        }
+    }
+
+    @Override
+    public void resetStats() {
+        hitCount = 0;
+        missCount = 0;
+        bytesRead = 0;
+        bytesWritten = 0;
+        if (setStats != null) setStats.reset();
+    }
+
+    @Override
+    public int getHitCount() {
+        return hitCount;
+    }
+
+    @Override
+    public int getMissCount() {
+        return missCount;
+    }
+
+    @Override
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public WritePolicy getWritePolicy() {
+        return writePolicy;
+    }
+
+    @Override
+    public int getLineSize() {
+        return geometry.getLineSize();
+    }
+
+    //bytes of simulated state, all of it off the heap
+    public long getFootprintBytes() {
+        return state.capacity();
+    }
+
+    //same view as SetAssociativeCache: valid blocks only, each set ordered from LRU to MRU
+    @Override
+    public CacheBlock[] getBlocks() {
+        List<CacheBlock> all = new ArrayList<>();
+        CacheBlock[] set = new CacheBlock[ways];
+        for (int index = 0; index < sets; index++) {
+            int valid = 0;
+            for (int i = index * ways, end = i + ways; i < end; i++) {
+                int meta = meta(i);
+                if ((meta & VALID) == 0) continue;
+                set[meta >>> RANK_SHIFT] = block(i);
+                valid++;
+            }
+            for (int rank = valid - 1; rank >= 0; rank--) all.add(set[rank]);
+        }
+        return all.toArray(new CacheBlock[0]);
+    }
+
+    private CacheBlock block(int slot) {
+        CacheBlock block = new CacheBlock();
+        block.setTag(tag(slot));
+        block.setValid(true);
+        block.setDirty((meta(slot) & DIRTY) != 0);
+        return block;
+    }
+
+    @Override
+    public int getLastAccessedIndex() {
+        return lastAccessedSet;
+    }
+
+    @Override
+    public int getBlockCount() {
+        return sets * ways;
+    }
+
+    public CacheGeometry getGeometry() {
+        return geometry;
+    }
+
+    @Override
+    public int getSetCount() {
+        return sets;
+    }
+
+    @Override
+    public int getWays() {
+        return ways;
+    }
+
+    @Override
+    public int setIndexOf(long address) {
+        return geometry.setIndex(address);
+    }
+
+    //ways are physical slots here; a hit does not move a block
+    @Override
+    public CacheBlock getBlock(int set, int way) {
+        int slot = set * ways + way;
+        return (meta(slot) & VALID) == 0 ? null : block(slot);
+    }
+
+    @Override
+    public void setChangeListener(SetChangeListener listener) {
+        this.changeListener = listener;
+    }
+
+    @Override
+    public void setSetStatsEnabled(boolean enabled) {
+        setStats = enabled ? new SetStats(sets) : null;
+    }
+
+    @Override
+    public SetStats getSetStats() {
+        return setStats;
+    }
+
+    //the packed buffer as is, so a restore is a single bulk copy
+    @Override
+    public long stateSize() {
+        return CacheSnapshot.SHAPE_BYTES + CacheSnapshot.COUNTER_BYTES + state.capacity();
+    }
+
+    @Override
+    public void writeState(ByteBuffer out) {
+        CacheSnapshot.writeShape(out, CacheSnapshot.OFF_HEAP, geometry);
+        out.putInt(hitCount).putInt(missCount).putLong(bytesRead).putLong(bytesWritten).putInt(lastAccessedSet);
+        out.put(state.duplicate().clear());
+    }
+
+    @Override
+    public void readState(ByteBuffer in) {
+        CacheSnapshot.checkShape(in, CacheSnapshot.OFF_HEAP, geometry);
+        hitCount = in.getInt();
+        missCount = in.getInt();
+        bytesRead = in.getLong();
+        bytesWritten = in.getLong();
+        lastAccessedSet = in.getInt();
+        state.put(0, in, in.position(), state.capacity());
+        in.position(in.position() + state.capacity());
+        SetChangeListener listener = changeListener;
+        if (listener != null) {
+            for (int i = 0; i < sets; i++) listener.setChanged(i);
+        }
+    }
+}
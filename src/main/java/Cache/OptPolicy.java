@@ -0,0 +1,67 @@
+package Cache;
+
+/**
+ * Belady's optimal replacement: evicts the line whose next use lies furthest in the future. The
+ * next-use index is computed up front from the whole trace, so the cache must then see exactly
+ * that trace, access by access and in order, as a single-level cache. Lines are always allocated
+ * (no bypass), which makes this the ceiling for every policy here.
+ */
+public class OptPolicy implements ReplacementPolicy {
+    private static final int NEVER = Integer.MAX_VALUE;
+
+    private final int[] nextUse;
+    private int ways;
+    private int[] slotNextUse;
+    private int position = -1;
+
+    public OptPolicy(long[] addresses, int size, int lineSize) {
+        nextUse = new int[size];
+        LongIntHashMap seen = new LongIntHashMap(1 << 16);
+        for (int i = size - 1; i >= 0; i--) {
+            long line = addresses[i] & -lineSize;
+            int next = seen.get(line);
+            nextUse[i] = next == LongIntHashMap.MISSING ? NEVER : next;
+            seen.put(line, i);
+        }
+    }
+
+    @Override
+    public void init(int sets, int ways) {
+        this.ways = ways;
+        this.slotNextUse = new int[sets * ways];
+    }
+
+    @Override
+    public void onAccess() {
+        position++;
+    }
+
+    @Override
+    public void onHit(int set, int way) {
+        slotNextUse[set * ways + way] = current();
+    }
+
+    @Override
+    public void onFill(int set, int way) {
+        slotNextUse[set * ways + way] = current();
+    }
+
+    private int current() {
+        return position >= 0 && position < nextUse.length ? nextUse[position] : NEVER;
+    }
+
+    @Override
+    public int victim(int set) {
+        int base = set * ways;
+        int victim = 0;
+        for (int w = 1; w < ways; w++) {
+            if (slotNextUse[base + w] > slotNextUse[base + victim]) victim = w;
+        }
+        return victim;
+    }
+
+    @Override
+    public void reset() {
+        position = -1;
+    }
+}
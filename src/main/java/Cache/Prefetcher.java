@@ -0,0 +1,19 @@
+package Cache;
+
+/**
+ * Decides which lines to fetch ahead of demand. A PrefetchingCache calls it after every demand
+ * access. Degree is how many lines one trigger prefetches; distance is how many lines (or strides)
+ * ahead of the triggering access the first of them is.
+ */
+public interface Prefetcher {
+    /**
+     * address is the demand address; hit tells whether it hit, and prefetchHit whether it was
+     * the first use of a prefetched line. Writes the addresses to prefetch into out (at most
+     * out.length of them) and returns how many were written.
+     */
+    int onAccess(long address, boolean hit, boolean prefetchHit, long[] out);
+
+    int getDegree();
+
+    void reset();
+}
@@ -0,0 +1,229 @@
+package Cache;
+
+/**
+ * Puts a Prefetcher in front of a cache. Demand accesses go to the wrapped cache as usual and are
+ * then shown to the prefetcher; the lines it asks for are filled unless already present.
+ *
+ * Demand hits are split into hits on lines a demand miss brought in and first hits on prefetched
+ * lines (prefetch hits). A prefetched line evicted before any demand use is a useless prefetch. A
+ * line evicted to make room for a prefetch and then missed on by demand is a pollution miss.
+ * Only the last getBlockCount() such victims are remembered, so both records stay bounded by the
+ * cache size however long the trace is.
+ *
+ * Hit and miss counts are the wrapped cache's, i.e. demand only; bytes read include prefetches.
+ */
+public class PrefetchingCache implements CacheInterface {
+    private static final int UNUSED = 1; // prefetched and not yet used
+
+    private final CacheInterface cache;
+    private final Prefetcher prefetcher;
+    private final int lineSize;
+    private final long[] candidates;
+    private final LongIntHashMap prefetched = new LongIntHashMap(1 << 10);
+    private final LongIntHashMap prefetchVictims = new LongIntHashMap(1 << 10); // line -> slot in victimRing
+    private final long[] victimRing; // the most recent prefetch victims, oldest overwritten first
+    private int victimNext = 0;
+    private long victimsSeen = 0;
+    private boolean prefetching = false;
+    private long demandHits = 0;
+    private long prefetchHits = 0;
+    private long prefetches = 0;
+    private long uselessPrefetches = 0;
+    private long prefetchEvictions = 0;
+    private long pollutionMisses = 0;
+    private EvictionListener evictionListener;
+
+    public PrefetchingCache(CacheInterface cache, Prefetcher prefetcher) {
+        this.cache = cache;
+        this.prefetcher = prefetcher;
+        this.lineSize = cache.getLineSize();
+        this.candidates = new long[prefetcher.getDegree()];
+        this.victimRing = new long[Math.max(1, cache.getBlockCount())];
+        cache.setEvictionListener(this::evicted);
+    }
+
+    private void evicted(long line, boolean dirty) {
+        if (prefetched.remove(line) == UNUSED) {
+            uselessPrefetches++;
+        } else if (prefetching) {
+            prefetchEvictions++;
+            rememberVictim(line);
+        }
+        if (evictionListener != null) evictionListener.evicted(line, dirty);
+    }
+
+    @Override
+    public boolean access(long address) {
+        boolean hit = cache.access(address);
+        afterDemand(address, hit);
+        return hit;
+    }
+
+    @Override
+    public boolean write(long address) {
+        boolean hit = cache.write(address);
+        afterDemand(address, hit);
+        return hit;
+    }
+
+    private void afterDemand(long address, boolean hit) {
+        long line = address & -lineSize;
+        boolean prefetchHit = false;
+        if (hit) {
+            if (prefetched.remove(line) == UNUSED) {
+                prefetchHit = true;
+                prefetchHits++;
+            } else {
+                demandHits++;
+            }
+        } else if (prefetchVictims.remove(line) != LongIntHashMap.MISSING) {
+            pollutionMisses++;
+        }
+        int n = prefetcher.onAccess(address, hit, prefetchHit, candidates);
+        for (int i = 0; i < n; i++) prefetch(candidates[i]);
+    }
+
+    private void prefetch(long line) {
+        if (cache.contains(line)) return;
+        prefetching = true;
+        try {
+            cache.fill(line);
+        } finally {
+            prefetching = false;
+        }
+        prefetched.put(line, UNUSED);
+        prefetchVictims.remove(line);
+        prefetches++;
+    }
+
+    //once getBlockCount() newer prefetch victims have followed it, a victim would most likely have
+    //been evicted anyway, so it is forgotten
+    private void rememberVictim(long line) {
+        int slot = victimNext;
+        if (victimsSeen >= victimRing.length && prefetchVictims.get(victimRing[slot]) == slot) {
+            prefetchVictims.remove(victimRing[slot]);
+        }
+        victimRing[slot] = line;
+        prefetchVictims.put(line, slot);
+        victimNext = slot + 1 == victimRing.length ? 0 : slot + 1;
+        victimsSeen++;
+    }
+
+    @Override
+    public boolean lookup(long address) {
+        return cache.lookup(address);
+    }
+
+    @Override
+    public void fill(long address) {
+        cache.fill(address);
+    }
+
+    @Override
+    public void install(long address, boolean dirty) {
+        cache.install(address, dirty);
+    }
+
+    @Override
+    public boolean invalidate(long address) {
+        prefetched.remove(address & -lineSize);
+        return cache.invalidate(address);
+    }
+
+    @Override
+    public boolean isDirty(long address) {
+        return cache.isDirty(address);
+    }
+
+    @Override
+    public boolean contains(long address) {
+        return cache.contains(address);
+    }
+
+    @Override
+    public void setEvictionListener(EvictionListener listener) {
+        this.evictionListener = listener;
+    }
+
+    @Override
+    public int getHitCount() {
+        return cache.getHitCount();
+    }
+
+    @Override
+    public int getMissCount() {
+        return cache.getMissCount();
+    }
+
+    @Override
+    public long getBytesRead() {
+        return cache.getBytesRead() + prefetches * lineSize;
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return cache.getBytesWritten();
+    }
+
+    @Override
+    public WritePolicy getWritePolicy() {
+        return cache.getWritePolicy();
+    }
+
+    @Override
+    public int getLineSize() {
+        return lineSize;
+    }
+
+    @Override
+    public void reset() {
+        cache.reset();
+        prefetcher.reset();
+        prefetched.clear();
+        prefetchVictims.clear();
+        victimNext = 0;
+        victimsSeen = 0;
+        demandHits = 0;
+        prefetchHits = 0;
+        prefetches = 0;
+        uselessPrefetches = 0;
+        prefetchEvictions = 0;
+        pollutionMisses = 0;
+    }
+
+    //the prefetcher's training and the record of unused prefetched lines are state, not stats
+    @Override
+    public void resetStats() {
+        cache.resetStats();
+        demandHits = 0;
+        prefetchHits = 0;
+        prefetches = 0;
+        uselessPrefetches = 0;
+        prefetchEvictions = 0;
+        pollutionMisses = 0;
+    }
+
+    @Override
+    public CacheBlock[] getBlocks() {
+        return cache.getBlocks();
+    }
+
+    @Override
+    public int getLastAccessedIndex() {
+        return cache.getLastAccessedIndex();
+    }
+
+    @Override
+    public int getBlockCount() {
+        return cache.getBlockCount();
+    }
+
+    public CacheInterface getCache() { return cache; }
+    public Prefetcher getPrefetcher() { return prefetcher; }
+    public long getDemandHitCount() { return demandHits; }
+    public long getPrefetchHitCount() { return prefetchHits; }
+    public long getPrefetchCount() { return prefetches; }
+    public long getUselessPrefetchCount() { return uselessPrefetches; }
+    public long getPrefetchEvictionCount() { return prefetchEvictions; }
+    public long getPollutionMissCount() { return pollutionMisses; }
+}
@@ -0,0 +1,65 @@
+package Cache;
+
+import java.nio.ByteBuffer;
+
+//uniformly random victims from a per-set xorshift generator, so results do not depend on how sets are split across threads
+public class RandomPolicy implements ReplacementPolicy, Snapshottable {
+    private final long seed;
+    private int ways;
+    private long[] state;
+
+    public RandomPolicy() {
+        this(0x9E3779B97F4A7C15L);
+    }
+
+    public RandomPolicy(long seed) {
+        this.seed = seed;
+    }
+
+    @Override
+    public void init(int sets, int ways) {
+        this.ways = ways;
+        this.state = new long[sets];
+        reset();
+    }
+
+    @Override
+    public void onHit(int set, int way) {
+    }
+
+    @Override
+    public void onFill(int set, int way) {
+    }
+
+    @Override
+    public int victim(int set) {
+        long x = state[set];
+        x ^= x << 13;
+        x ^= x >>> 7;
+        x ^= x << 17;
+        state[set] = x;
+        return (int) Long.remainderUnsigned(x, ways);
+    }
+
+    @Override
+    public void reset() {
+        for (int set = 0; set < state.length; set++) state[set] = (seed ^ set * 0xBF58476D1CE4E5B9L) | 1;
+    }
+
+    @Override
+    public long stateSize() {
+        return 1 + (long) state.length * Long.BYTES;
+    }
+
+    @Override
+    public void writeState(ByteBuffer out) {
+        out.put(CacheSnapshot.RANDOM_POLICY);
+        CacheSnapshot.putLongs(out, state);
+    }
+
+    @Override
+    public void readState(ByteBuffer in) {
+        CacheSnapshot.checkPolicy(in, CacheSnapshot.RANDOM_POLICY);
+        CacheSnapshot.getLongs(in, state);
+    }
+}
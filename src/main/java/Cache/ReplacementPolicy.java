@@ -0,0 +1,43 @@
+package Cache;
+
+/**
+ * Chooses victims for FlatSetAssociativeCache. Implementations keep their state in primitive
+ * arrays indexed by set * ways + way, sized in init(). The cache fills invalid ways itself and
+ * only asks for a victim when the set is full.
+ */
+public interface ReplacementPolicy {
+    //called once by the cache, before anything else
+    void init(int sets, int ways);
+
+    void onHit(int set, int way);
+
+    //a new line was placed in the way
+    void onFill(int set, int way);
+
+    //only called when every way of the set holds a line
+    int victim(int set);
+
+    default void onInvalidate(int set, int way) {
+    }
+
+    //called once per demand access (hit or miss), in trace order, before onHit/onFill
+    default void onAccess() {
+    }
+
+    void reset();
+
+    //every policy that needs nothing but the cache shape: lru, plru, bitplru, fifo, random, lfu, srrip, brrip
+    static ReplacementPolicy of(String name) {
+        switch (name) {
+            case "lru": return new LruPolicy();
+            case "plru": return new TreePlruPolicy();
+            case "bitplru": return new BitPlruPolicy();
+            case "fifo": return new FifoPolicy();
+            case "random": return new RandomPolicy();
+            case "lfu": return new LfuPolicy();
+            case "srrip": return new RripPolicy(false);
+            case "brrip": return new RripPolicy(true);
+            default: throw new IllegalArgumentException("Unknown replacement policy " + name);
+        }
+    }
+}
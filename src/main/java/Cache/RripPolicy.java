@@ -0,0 +1,78 @@
+package Cache;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Re-reference interval prediction with 2-bit values (0 = used soon, 3 = used far in the future).
+ * A hit sets 0; the victim is the first way at 3, ageing the whole set until one is. SRRIP fills
+ * at 2. BRRIP fills at 3 except for one fill in BIMODAL_PERIOD per set, which resists thrashing.
+ */
+public class RripPolicy implements ReplacementPolicy, Snapshottable {
+    private static final byte MAX = 3;
+    private static final int BIMODAL_PERIOD = 32;
+
+    private final boolean bimodal;
+    private int ways;
+    private byte[] rrpv;
+    private int[] fills;
+
+    public RripPolicy(boolean bimodal) {
+        this.bimodal = bimodal;
+    }
+
+    @Override
+    public void init(int sets, int ways) {
+        this.ways = ways;
+        this.rrpv = new byte[sets * ways];
+        this.fills = new int[sets];
+    }
+
+    @Override
+    public void onHit(int set, int way) {
+        rrpv[set * ways + way] = 0;
+    }
+
+    @Override
+    public void onFill(int set, int way) {
+        byte value = MAX - 1;
+        if (bimodal && ++fills[set] % BIMODAL_PERIOD != 0) value = MAX;
+        rrpv[set * ways + way] = value;
+    }
+
+    @Override
+    public int victim(int set) {
+        int base = set * ways;
+        while (true) {
+            for (int w = 0; w < ways; w++) {
+                if (rrpv[base + w] == MAX) return w;
+            }
+            for (int w = 0; w < ways; w++) rrpv[base + w]++;
+        }
+    }
+
+    @Override
+    public void reset() {
+        Arrays.fill(rrpv, (byte) 0);
+        Arrays.fill(fills, 0);
+    }
+
+    @Override
+    public long stateSize() {
+        return 1 + rrpv.length + (long) fills.length * Integer.BYTES;
+    }
+
+    @Override
+    public void writeState(ByteBuffer out) {
+        out.put(bimodal ? CacheSnapshot.BRRIP_POLICY : CacheSnapshot.SRRIP_POLICY);
+        out.put(rrpv);
+        CacheSnapshot.putInts(out, fills);
+    }
+
+    @Override
+    public void readState(ByteBuffer in) {
+        CacheSnapshot.checkPolicy(in, bimodal ? CacheSnapshot.BRRIP_POLICY : CacheSnapshot.SRRIP_POLICY);
+        in.get(rrpv);
+        CacheSnapshot.getInts(in, fills);
+    }
+}
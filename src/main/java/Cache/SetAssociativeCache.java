@@ -1,21 +1,37 @@
 
 package Cache;
 
+import java.nio.ByteBuffer;
 import java.util.*;
 
-public class SetAssociativeCache implements CacheInterface {
+public class SetAssociativeCache implements CacheInterface, SetMapped, Snapshottable {
     private final int sets;
     private final int ways;
     private final List<Deque<CacheBlock>> cacheSets;
-    private final int indexMask;
+    private final CacheGeometry geometry;
+    private final WritePolicy writePolicy;
+    private long bytesRead = 0;
+    private long bytesWritten = 0;
     private int hitCount = 0;
     private int missCount = 0;
     private int lastAccessedSet = -1;
+    private volatile SetChangeListener changeListener; // swapped by the UI thread while a simulation runs
+    private EvictionListener evictionListener;
+    private SetStats setStats;
 
     public SetAssociativeCache(int totalBlocks, int ways) {
-        this.ways = ways;
-        this.sets = totalBlocks / ways;
-        this.indexMask = sets - 1;
+        this(CacheGeometry.ofBlocks(totalBlocks, ways));
+    }
+
+    public SetAssociativeCache(CacheGeometry geometry) {
+        this(geometry, WritePolicy.WRITE_BACK);
+    }
+
+    public SetAssociativeCache(CacheGeometry geometry, WritePolicy writePolicy) {
+        this.geometry = geometry;
+        this.writePolicy = writePolicy;
+        this.ways = geometry.getWays();
+        this.sets = geometry.getSets();
         cacheSets = new ArrayList<>(sets);
         for (int i = 0; i < sets; i++) {
             cacheSets.add(new ArrayDeque<>());
@@ -23,38 +39,203 @@ public class SetAssociativeCache implements CacheInterface {
     }
 
     @Override
-    public boolean access(int address) {
-        int index = address & indexMask;
-        int tag = address >> Integer.numberOfTrailingZeros(sets);
+    public boolean access(long address) {
+        if (lookup(address)) return true;
+        miss(address, false);
+        return false;
+    }
+
+    //access() in one loop: the fields stay in locals, each set is searched from its MRU end, where a
+    //repeated line sits, and a hit is moved there through the iterator instead of a second scan
+    @Override
+    public int accessBatch(long[] addresses, int offset, int length, long[] hitBitmap) {
+        if (hitBitmap != null) Arrays.fill(hitBitmap, 0, (length + 63) >>> 6, 0L);
+        CacheGeometry geometry = this.geometry;
+        List<Deque<CacheBlock>> cacheSets = this.cacheSets;
+        SetStats stats = setStats;
+        SetChangeListener listener = changeListener;
+        int lineSize = geometry.getLineSize();
+        int hits = 0;
+        int index = lastAccessedSet;
+        for (int i = 0; i < length; i++) {
+            long address = addresses[offset + i];
+            index = geometry.setIndex(address);
+            long tag = geometry.tag(address);
+            Deque<CacheBlock> set = cacheSets.get(index);
+            boolean hit = false;
+            for (Iterator<CacheBlock> it = set.descendingIterator(); it.hasNext(); ) {
+                CacheBlock block = it.next();
+                if (block.getTag() == tag && block.isValid()) {
+                    if (block != set.peekLast()) {
+                        it.remove();
+                        set.addLast(block);
+                    }
+                    hit = true;
+                    break;
+                }
+            }
+            if (stats != null) stats.access(index, geometry.blockAddress(address), hit);
+            if (hit) {
+                hits++;
+                if (hitBitmap != null) hitBitmap[i >>> 6] |= 1L << i;
+                if (listener != null) listener.setChanged(index);
+            } else {
+                bytesRead += lineSize;
+                if (allocate(index, tag, false)) bytesWritten += lineSize;
+            }
+        }
+        hitCount += hits;
+        missCount += length - hits;
+        lastAccessedSet = index;
+        return hits;
+    }
+
+    @Override
+    public boolean write(long address) {
+        boolean hit = lookup(address);
+        if (writePolicy == WritePolicy.WRITE_THROUGH) {
+            bytesWritten += WritePolicy.storeBytes(geometry.getLineSize());
+        } else if (hit) {
+            cacheSets.get(lastAccessedSet).peekLast().setDirty(true); // promoted to MRU by lookup
+        } else {
+            miss(address, true);
+        }
+        return hit;
+    }
+
+    //fetches the line from the next level, writing back a dirty victim
+    private void miss(long address, boolean dirty) {
+        bytesRead += geometry.getLineSize();
+        if (allocate(geometry.setIndex(address), geometry.tag(address), dirty)) bytesWritten += geometry.getLineSize();
+    }
+
+    @Override
+    public boolean lookup(long address) {
+        int index = geometry.setIndex(address);
         lastAccessedSet = index;
+        boolean hit = promote(index, geometry.tag(address));
+        if (hit) hitCount++;
+        else missCount++;
+        if (setStats != null) setStats.access(index, geometry.blockAddress(address), hit);
+        return hit;
+    }
+
+    @Override
+    public void fill(long address) {
+        int index = geometry.setIndex(address);
+        long tag = geometry.tag(address);
+        if (!promote(index, tag)) allocate(index, tag, false);
+    }
+
+    @Override
+    public void install(long address, boolean dirty) {
+        int index = geometry.setIndex(address);
+        long tag = geometry.tag(address);
+        if (promote(index, tag)) {
+            if (dirty) cacheSets.get(index).peekLast().setDirty(true);
+        } else {
+            allocate(index, tag, dirty);
+        }
+    }
+
+    //moves the block to the MRU end if present
+    private boolean promote(int index, long tag) {
         Deque<CacheBlock> set = cacheSets.get(index);
         for (CacheBlock block : set) {
             if (block.isValid() && block.getTag() == tag) {
                 set.remove(block);
                 set.addLast(block);
-                hitCount++;
+                SetChangeListener listener = changeListener;
+                if (listener != null) listener.setChanged(index);
                 return true;
             }
         }
-        missCount++;
+        return false;
+    }
+
+    //adds the block at the MRU end, evicting the LRU block if the set is full; returns whether the victim was dirty
+    private boolean allocate(int index, long tag, boolean dirty) {
+        Deque<CacheBlock> set = cacheSets.get(index);
         CacheBlock newBlock = new CacheBlock();
         newBlock.setTag(tag);
         newBlock.setValid(true);
+        newBlock.setDirty(dirty);
+        boolean victimDirty = false;
         if (set.size() >= ways) {
-            set.pollFirst();
+            CacheBlock victim = set.pollFirst();
+            victimDirty = victim.isDirty();
+            if (setStats != null) setStats.evicted(index);
+            if (evictionListener != null) evictionListener.evicted(geometry.lineAddress(victim.getTag(), index), victimDirty);
         }
         set.addLast(newBlock);
+        SetChangeListener listener = changeListener;
+        if (listener != null) listener.setChanged(index);
+        return victimDirty;
+    }
+
+    @Override
+    public boolean invalidate(long address) {
+        int index = geometry.setIndex(address);
+        long tag = geometry.tag(address);
+        Deque<CacheBlock> set = cacheSets.get(index);
+        for (CacheBlock block : set) {
+            if (block.getTag() == tag) {
+                set.remove(block);
+                SetChangeListener listener = changeListener;
+                if (listener != null) listener.setChanged(index);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean contains(long address) {
+        long tag = geometry.tag(address);
+        for (CacheBlock block : cacheSets.get(geometry.setIndex(address))) {
+            if (block.getTag() == tag) return true;
+        }
         return false;
     }
 
+    @Override
+    public boolean isDirty(long address) {
+        long tag = geometry.tag(address);
+        for (CacheBlock block : cacheSets.get(geometry.setIndex(address))) {
+            if (block.getTag() == tag) return block.isDirty();
+        }
+        return false;
+    }
+
+    @Override
+    public void setEvictionListener(EvictionListener listener) {
+        this.evictionListener = listener;
+    }
+
     @Override
     public void reset() {
         hitCount = 0;
         missCount = 0;
+        bytesRead = 0;
+        bytesWritten = 0;
         lastAccessedSet = -1;
+        if (setStats != null) setStats.reset();
         for (Deque<CacheBlock> set : cacheSets) {
             set.clear();
         }
+        SetChangeListener listener = changeListener;
+        if (listener != null) {
+            for (int i = 0; i < sets; i++) listener.setChanged(i);
+        }
+    }
+
+    @Override
+    public void resetStats() {
+        hitCount = 0;
+        missCount = 0;
+        bytesRead = 0;
+        bytesWritten = 0;
+        if (setStats != null) setStats.reset();
     }
 
     @Override
@@ -67,6 +248,26 @@ public class SetAssociativeCache implements CacheInterface {
         return missCount;
     }
 
+    @Override
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public WritePolicy getWritePolicy() {
+        return writePolicy;
+    }
+
+    @Override
+    public int getLineSize() {
+        return geometry.getLineSize();
+    }
+
     @Override
     public CacheBlock[] getBlocks() {
         List<CacheBlock> all = new ArrayList<>();
@@ -81,31 +282,98 @@ public class SetAssociativeCache implements CacheInterface {
         return lastAccessedSet;
     }
 
-    public void insert(String address) {
-        int addr = address.startsWith("0x") ? Integer.parseInt(address.substring(2), 16) : Integer.parseInt(address);
-        int index = addr & indexMask;
-        int tag = addr >> Integer.numberOfTrailingZeros(sets);
-        Deque<CacheBlock> set = cacheSets.get(index);
+    public int getBlockCount() {
+        return sets * ways;
+    }
 
-        for (CacheBlock block : set) {
-            if (block.isValid() && block.getTag() == tag) {
+    public CacheGeometry getGeometry() {
+        return geometry;
+    }
 
-                set.remove(block);
-                set.addLast(block);
-                return;
-            }
-        }
-        CacheBlock newBlock = new CacheBlock();
-        newBlock.setTag(tag);
-        newBlock.setValid(true);
-        if (set.size() >= ways) {
-            set.pollFirst();
+    @Override
+    public int getSetCount() {
+        return sets;
+    }
+
+    @Override
+    public int getWays() {
+        return ways;
+    }
+
+    @Override
+    public int setIndexOf(long address) {
+        return geometry.setIndex(address);
+    }
+
+    //ways are numbered from LRU (0) to MRU, as in the deque
+    @Override
+    public CacheBlock getBlock(int set, int way) {
+        int i = 0;
+        for (CacheBlock block : cacheSets.get(set)) {
+            if (i++ == way) return block;
         }
-        set.addLast(newBlock);
+        return null;
     }
 
+    @Override
+    public void setChangeListener(SetChangeListener listener) {
+        this.changeListener = listener;
+    }
 
-    public int getBlockCount() {
-        return sets * ways;
+    @Override
+    public void setSetStatsEnabled(boolean enabled) {
+        setStats = enabled ? new SetStats(getSetCount()) : null;
+    }
+
+    @Override
+    public SetStats getSetStats() {
+        return setStats;
+    }
+
+    //per set: the number of blocks, then each block's tag and dirty flag from LRU to MRU
+    @Override
+    public long stateSize() {
+        long size = CacheSnapshot.SHAPE_BYTES + CacheSnapshot.COUNTER_BYTES + (long) sets * Integer.BYTES;
+        for (Deque<CacheBlock> set : cacheSets) size += (long) set.size() * (Long.BYTES + 1);
+        return size;
+    }
+
+    @Override
+    public void writeState(ByteBuffer out) {
+        CacheSnapshot.writeShape(out, CacheSnapshot.SET_ASSOCIATIVE, geometry);
+        out.putInt(hitCount).putInt(missCount).putLong(bytesRead).putLong(bytesWritten).putInt(lastAccessedSet);
+        for (Deque<CacheBlock> set : cacheSets) {
+            out.putInt(set.size());
+            for (CacheBlock block : set) {
+                out.putLong(block.getTag());
+                out.put((byte) (block.isDirty() ? 1 : 0));
+            }
+        }
+    }
+
+    @Override
+    public void readState(ByteBuffer in) {
+        CacheSnapshot.checkShape(in, CacheSnapshot.SET_ASSOCIATIVE, geometry);
+        hitCount = in.getInt();
+        missCount = in.getInt();
+        bytesRead = in.getLong();
+        bytesWritten = in.getLong();
+        lastAccessedSet = in.getInt();
+        for (Deque<CacheBlock> set : cacheSets) {
+            set.clear();
+            int count = in.getInt();
+            if (count < 0 || count > ways) throw new IllegalArgumentException("Corrupt snapshot: " + count + " blocks in a set");
+            for (int i = 0; i < count; i++) {
+                CacheBlock block = new CacheBlock();
+                block.setTag(in.getLong());
+                block.setValid(true);
+                block.setDirty(in.get() != 0);
+                set.addLast(block);
+            }
+        }
+        SetChangeListener listener = changeListener;
+        if (listener != null) {
+            for (int i = 0; i < sets; i++) listener.setChanged(i);
+        }
     }
 }
@@ -0,0 +1,6 @@
+package Cache;
+
+//notified whenever the contents or order of a set change
+public interface SetChangeListener {
+    void setChanged(int set);
+}
@@ -0,0 +1,23 @@
+package Cache;
+
+/**
+ * Caches whose sets are independent: an access only ever touches the set setIndexOf(address).
+ * Blocks are addressed as (set, way) so a view can refresh just the sets that changed.
+ */
+public interface SetMapped {
+    int getSetCount();
+    int getWays();
+    int setIndexOf(long address);
+
+    //the block in a slot, or null if the slot is empty
+    CacheBlock getBlock(int set, int way);
+
+    //replaces any previous listener; null removes it
+    void setChangeListener(SetChangeListener listener);
+
+    //per-set counters and reuse histogram, off by default since they cost a hash lookup per access
+    void setSetStatsEnabled(boolean enabled);
+
+    //null while disabled
+    SetStats getSetStats();
+}
@@ -0,0 +1,67 @@
+package Cache;
+
+import java.util.Arrays;
+
+/**
+ * Per-set access, miss and eviction counters of one cache, plus a histogram of reuse distances:
+ * the number of accesses to the cache between two accesses to the same line, in log2 buckets.
+ * Bucket 0 counts distance 0, bucket b distances in [2^(b-1), 2^b). First accesses to a line are
+ * counted as cold instead. Distances are measured on an int clock, so they must stay below 2^31.
+ */
+public class SetStats {
+    public static final int BUCKETS = 32;
+
+    private final long[] accesses;
+    private final long[] misses;
+    private final long[] evictions;
+    private final long[] reuse = new long[BUCKETS];
+    private final LongIntHashMap lastUse = new LongIntHashMap(1 << 12);
+    private long cold = 0;
+    private int clock = 0;
+
+    SetStats(int sets) {
+        accesses = new long[sets];
+        misses = new long[sets];
+        evictions = new long[sets];
+    }
+
+    void access(int set, long block, boolean hit) {
+        accesses[set]++;
+        if (!hit) misses[set]++;
+        int last = lastUse.get(block);
+        if (last == LongIntHashMap.MISSING) {
+            cold++;
+        } else {
+            int distance = (clock - last - 1) & Integer.MAX_VALUE;
+            reuse[32 - Integer.numberOfLeadingZeros(distance)]++;
+        }
+        lastUse.put(block, clock);
+        clock = (clock + 1) & Integer.MAX_VALUE;
+    }
+
+    void evicted(int set) {
+        evictions[set]++;
+    }
+
+    void reset() {
+        Arrays.fill(accesses, 0);
+        Arrays.fill(misses, 0);
+        Arrays.fill(evictions, 0);
+        Arrays.fill(reuse, 0);
+        lastUse.clear();
+        cold = 0;
+        clock = 0;
+    }
+
+    public int getSetCount() { return accesses.length; }
+    public long getAccessCount(int set) { return accesses[set]; }
+    public long getMissCount(int set) { return misses[set]; }
+    public long getEvictionCount(int set) { return evictions[set]; }
+    public long getReuseCount(int bucket) { return reuse[bucket]; }
+    public long getColdCount() { return cold; }
+
+    //the counters read by a heat map, without copying
+    public long[] accesses() { return accesses; }
+    public long[] misses() { return misses; }
+    public long[] evictions() { return evictions; }
+}
@@ -0,0 +1,14 @@
+package Cache;
+
+import java.nio.ByteBuffer;
+
+//caches whose full state (lines, replacement metadata, counters) CacheSnapshot can save and restore
+interface Snapshottable {
+    //bytes writeState() will put
+    long stateSize();
+
+    void writeState(ByteBuffer out);
+
+    //replaces the current state; the cache must have the shape it had when the state was written
+    void readState(ByteBuffer in);
+}
@@ -0,0 +1,151 @@
+package Cache;
+
+/**
+ * Single-pass LRU stack-distance analysis (Mattson et al.). For every access it measures how
+ * many distinct blocks of the same set were touched since the previous access to the block;
+ * an LRU set with W ways hits exactly when that distance is below W. One pass therefore gives
+ * the hit ratio of every associativity for a fixed number of sets (sets = 1 is the
+ * fully-associative case), indexed the same way as SetAssociativeCache.
+ *
+ * Each set keeps a Fenwick tree over its own access timestamps with a 1 at the latest access of
+ * every resident block, so a distance is one prefix sum. The timestamps are renumbered when a
+ * set's tree fills up, keeping it proportional to the distinct blocks in that set: O(N log M).
+ */
+public class StackDistanceAnalyzer {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int sets;
+    private final int indexMask;
+    private final int offsetBits;
+    private final int maxDistance;
+    private final long[] histogram; // histogram[d] = reuses at distance d, the last bucket holds >= maxDistance
+    private final LongIntHashMap lastAccess = new LongIntHashMap(1024);
+    private final int[][] trees;
+    private final long[][] addressAt;
+    private final int[] clock;
+    private final int[] live;
+    private long coldMisses = 0;
+    private long accesses = 0;
+
+    public StackDistanceAnalyzer(int sets, int maxDistance) {
+        this(sets, maxDistance, 1);
+    }
+
+    //addresses within one line of lineSize bytes count as the same block
+    public StackDistanceAnalyzer(int sets, int maxDistance, int lineSize) {
+        if (Integer.bitCount(lineSize) != 1) throw new IllegalArgumentException("Line size must be a power of two");
+        if (Integer.bitCount(sets) != 1) throw new IllegalArgumentException("Set count must be a power of two");
+        if (maxDistance <= 0) throw new IllegalArgumentException("Max distance must be positive");
+        this.sets = sets;
+        this.indexMask = sets - 1;
+        this.offsetBits = Integer.numberOfTrailingZeros(lineSize);
+        this.maxDistance = maxDistance;
+        this.histogram = new long[maxDistance + 1];
+        this.trees = new int[sets][];
+        this.addressAt = new long[sets][];
+        this.clock = new int[sets];
+        this.live = new int[sets];
+    }
+
+    public void access(long address) {
+        accesses++;
+        address >>>= offsetBits;
+        int set = (int) address & indexMask;
+        if (trees[set] == null) {
+            trees[set] = new int[INITIAL_CAPACITY + 1];
+            addressAt[set] = new long[INITIAL_CAPACITY];
+        }
+        if (clock[set] == addressAt[set].length) compact(set);
+        int[] tree = trees[set];
+        int previous = lastAccess.get(address);
+        if (previous == LongIntHashMap.MISSING) {
+            coldMisses++;
+        } else {
+            int distance = live[set] - prefixSum(tree, previous + 1);
+            histogram[Math.min(distance, maxDistance)]++;
+            add(tree, previous, -1);
+            live[set]--;
+        }
+        int now = clock[set]++;
+        add(tree, now, 1);
+        addressAt[set][now] = address;
+        live[set]++;
+        lastAccess.put(address, now);
+    }
+
+    //renumbers the live timestamps of a set to 0..live-1, growing its tree if more than half is live
+    private void compact(int set) {
+        int[] tree = trees[set];
+        long[] addresses = addressAt[set];
+        int capacity = addresses.length;
+        if (live[set] * 2 > capacity) capacity *= 2;
+        long[] packed = new long[capacity];
+        int n = 0;
+        for (int t = 0; t < clock[set]; t++) {
+            if (lastAccess.get(addresses[t]) == t) {
+                packed[n] = addresses[t];
+                lastAccess.put(addresses[t], n);
+                n++;
+            }
+        }
+        // every packed timestamp is live, so the tree is a Fenwick tree over all ones
+        int[] rebuilt = tree.length == capacity + 1 ? tree : new int[capacity + 1];
+        for (int i = 1; i <= capacity; i++) {
+            rebuilt[i] = Math.max(0, Math.min(i, n) - (i - (i & -i)));
+        }
+        trees[set] = rebuilt;
+        addressAt[set] = packed;
+        clock[set] = n;
+    }
+
+    private static int prefixSum(int[] tree, int end) {
+        int sum = 0;
+        for (int i = end; i > 0; i -= i & -i) sum += tree[i];
+        return sum;
+    }
+
+    private static void add(int[] tree, int index, int delta) {
+        for (int i = index + 1; i < tree.length; i += i & -i) tree[i] += delta;
+    }
+
+    //miss ratio of an LRU cache with this many sets and the given number of ways
+    public double getMissRatio(int ways) {
+        if (ways > maxDistance) throw new IllegalArgumentException("Ways beyond the tracked distance " + maxDistance);
+        if (accesses == 0) return 0;
+        long misses = coldMisses;
+        for (int d = ways; d <= maxDistance; d++) misses += histogram[d];
+        return misses / (double) accesses;
+    }
+
+    //curve[w] = miss ratio with w ways per set, for w = 0..maxDistance
+    public double[] getMissRatioCurve() {
+        double[] curve = new double[maxDistance + 1];
+        if (accesses == 0) return curve;
+        long misses = accesses;
+        for (int w = 0; w <= maxDistance; w++) {
+            curve[w] = misses / (double) accesses;
+            misses -= histogram[w];
+        }
+        return curve;
+    }
+
+    public long[] getHistogram() {
+        return histogram.clone();
+    }
+
+    public long getColdMisses() {
+        return coldMisses;
+    }
+
+    public long getAccessCount() {
+        return accesses;
+    }
+
+    public int getSetCount() {
+        return sets;
+    }
+
+    public int getMaxDistance() {
+        return maxDistance;
+    }
+}
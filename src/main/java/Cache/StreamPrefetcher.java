@@ -0,0 +1,92 @@
+package Cache;
+
+import java.util.Arrays;
+
+/**
+ * Tracks a few sequential streams of misses. A miss within WINDOW lines of a stream's last line
+ * extends that stream and sets its direction; a stream confirmed by CONFIRMATIONS such misses
+ * prefetches lines distance .. distance + degree - 1 ahead of the access in its direction, and
+ * the first hit on one of those lines keeps it running. A miss that fits no stream replaces the
+ * least recently used one.
+ */
+public class StreamPrefetcher implements Prefetcher {
+    private static final int WINDOW = 16;
+    private static final int CONFIRMATIONS = 2;
+
+    private final int lineSize;
+    private final int degree;
+    private final int distance;
+    private final long[] lastLine;  // in line numbers
+    private final int[] direction;  // +1, -1, or 0 while untrained
+    private final int[] hits;
+    private final long[] lastUsed;  // 0 = free
+    private long clock = 0;
+
+    public StreamPrefetcher(int lineSize, int degree, int distance) {
+        this(lineSize, degree, distance, 16);
+    }
+
+    public StreamPrefetcher(int lineSize, int degree, int distance, int streams) {
+        if (degree <= 0 || distance <= 0 || streams <= 0) {
+            throw new IllegalArgumentException("Degree, distance and streams must be positive");
+        }
+        this.lineSize = lineSize;
+        this.degree = degree;
+        this.distance = distance;
+        this.lastLine = new long[streams];
+        this.direction = new int[streams];
+        this.hits = new int[streams];
+        this.lastUsed = new long[streams];
+    }
+
+    @Override
+    public int onAccess(long address, boolean hit, boolean prefetchHit, long[] out) {
+        if (hit && !prefetchHit) return 0;
+        long line = Long.divideUnsigned(address, lineSize);
+        int stream = -1;
+        int victim = 0;
+        for (int s = 0; s < lastUsed.length; s++) {
+            if (lastUsed[s] != 0 && Math.abs(line - lastLine[s]) <= WINDOW && line != lastLine[s]) {
+                stream = s;
+                break;
+            }
+            if (lastUsed[s] < lastUsed[victim]) victim = s;
+        }
+        lastUsed[stream < 0 ? victim : stream] = ++clock;
+        if (stream < 0) {
+            lastLine[victim] = line;
+            direction[victim] = 0;
+            hits[victim] = 0;
+            return 0;
+        }
+        int dir = line - lastLine[stream] > 0 ? 1 : -1;
+        if (dir != direction[stream]) {
+            direction[stream] = dir;
+            hits[stream] = 1;
+        } else if (hits[stream] < CONFIRMATIONS) {
+            hits[stream]++;
+        }
+        lastLine[stream] = line;
+        if (hits[stream] < CONFIRMATIONS) return 0;
+        // lines left before the stream would run below 0 or past the top of the address space
+        long room = dir > 0 ? Long.divideUnsigned(-1L, lineSize) - line : line;
+        int n = 0;
+        for (int k = 0; k < degree && n < out.length; k++) {
+            long ahead = distance + k;
+            if (Long.compareUnsigned(ahead, room) > 0) break;
+            out[n++] = (line + dir * ahead) * lineSize;
+        }
+        return n;
+    }
+
+    @Override
+    public int getDegree() {
+        return degree;
+    }
+
+    @Override
+    public void reset() {
+        Arrays.fill(lastUsed, 0);
+        clock = 0;
+    }
+}
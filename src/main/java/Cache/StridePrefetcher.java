@@ -0,0 +1,91 @@
+package Cache;
+
+import java.util.Arrays;
+
+/**
+ * Classic stride prefetcher. Hardware keys its table by the PC of the load; traces carry no PC,
+ * so the table is keyed by memory region instead (2^regionBits bytes, 4 KB pages by default).
+ * Each entry remembers the last address seen in its region and the stride between the last two;
+ * once the same stride has been seen twice in a row, every access in the region prefetches
+ * address + stride * (distance .. distance + degree - 1).
+ */
+public class StridePrefetcher implements Prefetcher {
+    private static final int CONFIDENT = 2;
+    private static final int MAX_CONFIDENCE = 3;
+
+    private final int lineSize;
+    private final int degree;
+    private final int distance;
+    private final int regionBits;
+    private final int mask;
+    private final long[] regions;   // region number + 1, 0 = empty entry
+    private final long[] lastAddress;
+    private final long[] strides;
+    private final byte[] confidence;
+
+    public StridePrefetcher(int lineSize, int degree, int distance) {
+        this(lineSize, degree, distance, 12, 256);
+    }
+
+    //entries must be a power of two; the table is direct-mapped by region
+    public StridePrefetcher(int lineSize, int degree, int distance, int regionBits, int entries) {
+        if (degree <= 0 || distance <= 0) throw new IllegalArgumentException("Degree and distance must be positive");
+        if (Integer.bitCount(entries) != 1) throw new IllegalArgumentException("Entries must be a power of two");
+        this.lineSize = lineSize;
+        this.degree = degree;
+        this.distance = distance;
+        this.regionBits = regionBits;
+        this.mask = entries - 1;
+        this.regions = new long[entries];
+        this.lastAddress = new long[entries];
+        this.strides = new long[entries];
+        this.confidence = new byte[entries];
+    }
+
+    @Override
+    public int onAccess(long address, boolean hit, boolean prefetchHit, long[] out) {
+        long region = address >>> regionBits;
+        int i = (int) (region ^ region >>> 17) & mask;
+        if (regions[i] != region + 1) {
+            regions[i] = region + 1;
+            lastAddress[i] = address;
+            strides[i] = 0;
+            confidence[i] = 0;
+            return 0;
+        }
+        long stride = address - lastAddress[i];
+        lastAddress[i] = address;
+        if (stride == 0) return 0;
+        if (stride == strides[i]) {
+            if (confidence[i] < MAX_CONFIDENCE) confidence[i]++;
+        } else {
+            strides[i] = stride;
+            confidence[i] = 1;
+        }
+        if (confidence[i] < CONFIDENT) return 0;
+        int n = 0;
+        long previous = address & -lineSize;
+        for (int k = 0; k < degree && n < out.length; k++) {
+            long offset = stride * (distance + k);
+            long target = address + offset;
+            // stop before a candidate overflows, or wraps below 0 or past the top of the address space
+            if (Math.multiplyHigh(stride, distance + k) != offset >> 63) break;
+            if (offset > 0 ? Long.compareUnsigned(target, address) < 0 : Long.compareUnsigned(target, address) > 0) break;
+            long line = target & -lineSize;
+            if (line != previous) out[n++] = line; // small strides land in the same line repeatedly
+            previous = line;
+        }
+        return n;
+    }
+
+    @Override
+    public int getDegree() {
+        return degree;
+    }
+
+    @Override
+    public void reset() {
+        Arrays.fill(regions, 0);
+        Arrays.fill(confidence, (byte) 0);
+    }
+}
@@ -0,0 +1,81 @@
+package Cache;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Tree pseudo-LRU: a binary tree of ways - 1 bits per set, each pointing towards the half that
+ * was used less recently. An access flips the bits on its path to point away from it; the victim
+ * is found by following the bits from the root. Needs a power-of-two number of ways, at most 64.
+ */
+public class TreePlruPolicy implements ReplacementPolicy, Snapshottable {
+    private int ways;
+    private long[] bits; // node n (1-based, heap order) is bit n - 1; 0 points left, 1 points right
+
+    @Override
+    public void init(int sets, int ways) {
+        if (Integer.bitCount(ways) != 1 || ways > 64) {
+            throw new IllegalArgumentException("Tree-PLRU needs a power-of-two number of ways up to 64");
+        }
+        this.ways = ways;
+        this.bits = new long[sets];
+    }
+
+    @Override
+    public void onHit(int set, int way) {
+        touch(set, way);
+    }
+
+    @Override
+    public void onFill(int set, int way) {
+        touch(set, way);
+    }
+
+    private void touch(int set, int way) {
+        long tree = bits[set];
+        int node = 1;
+        for (int half = ways >> 1; half > 0; half >>= 1) {
+            boolean right = (way & half) != 0;
+            // point to the other half
+            if (right) tree &= ~(1L << (node - 1));
+            else tree |= 1L << (node - 1);
+            node = node * 2 + (right ? 1 : 0);
+        }
+        bits[set] = tree;
+    }
+
+    @Override
+    public int victim(int set) {
+        long tree = bits[set];
+        int node = 1;
+        int way = 0;
+        for (int half = ways >> 1; half > 0; half >>= 1) {
+            boolean right = (tree >>> (node - 1) & 1) != 0;
+            if (right) way |= half;
+            node = node * 2 + (right ? 1 : 0);
+        }
+        return way;
+    }
+
+    @Override
+    public void reset() {
+        Arrays.fill(bits, 0);
+    }
+
+    @Override
+    public long stateSize() {
+        return 1 + (long) bits.length * Long.BYTES;
+    }
+
+    @Override
+    public void writeState(ByteBuffer out) {
+        out.put(CacheSnapshot.TREE_PLRU_POLICY);
+        CacheSnapshot.putLongs(out, bits);
+    }
+
+    @Override
+    public void readState(ByteBuffer in) {
+        CacheSnapshot.checkPolicy(in, CacheSnapshot.TREE_PLRU_POLICY);
+        CacheSnapshot.getLongs(in, bits);
+    }
+}
@@ -0,0 +1,16 @@
+package Cache;
+
+//what a cache does with stores
+public enum WritePolicy {
+    //write-allocate: a store miss fetches the line, and stores only mark it dirty; dirty lines are written back on eviction
+    WRITE_BACK,
+    //no-write-allocate: every store is passed to the next level at once and a store miss allocates nothing
+    WRITE_THROUGH;
+
+    //traces carry no access size, so a store is taken to be one 8-byte word (or the whole line if smaller)
+    public static final int STORE_BYTES = 8;
+
+    public static int storeBytes(int lineSize) {
+        return Math.min(STORE_BYTES, lineSize);
+    }
+}
@@ -0,0 +1,631 @@
+//runs a trace file through a cache without the GUI, for batch jobs
+package main;
+
+import Cache.*;
+import sim.PartitionedSimulator;
+import sim.SamplingSimulator;
+import trace.BinaryTraceFormat;
+import trace.BinaryTraceReader;
+import trace.GzipTraceReader;
+import trace.MappedTraceReader;
+import trace.TraceBuffer;
+import trace.TraceSink;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class HeadlessMain {
+    private static final String USAGE =
+            "Usage: HeadlessMain [options] <trace-file>\n" +
+            "  Text traces and binary traces (see TraceConverter) are detected automatically, gzipped or not.\n" +
+            "  --cache direct|set|flat|offheap|full|multi\n" +
+            "                             cache type; flat is the allocation-free set-associative engine, offheap\n" +
+            "                             keeps set-associative LRU state in a direct buffer and reports its\n" +
+            "                             footprint, full is an O(1) fully-associative LRU cache of --blocks lines\n" +
+            "                             (default: set)\n" +
+            "  --blocks N                 total blocks (default: 8)\n" +
+            "  --ways N                   ways for a set-associative cache (default: 2)\n" +
+            "  --hierarchy FILE           simulate the multi-level hierarchy described in FILE (levels, latencies,\n" +
+            "                             line size, inclusion); implies --cache multi, and the file's line size\n" +
+            "                             and inclusion cannot be overridden with --line-size or --inclusion\n" +
+            "  --write-policy back|through\n" +
+            "                             write-back/write-allocate or write-through/no-write-allocate for a\n" +
+            "                             single-level cache; hierarchy files set it per level (default: back)\n" +
+            "  --inclusion nine|inclusive|exclusive\n" +
+            "                             inclusion policy of the multi-level hierarchy (default: nine)\n" +
+            "  --policy lru|plru|bitplru|fifo|random|lfu|srrip|brrip|opt\n" +
+            "                             replacement policy of a set-associative cache; anything but lru runs on\n" +
+            "                             the flat engine. opt (Belady) loads the trace into memory first and cannot\n" +
+            "                             be combined with --threads, --prefetch or sampling (default: lru)\n" +
+            "  --line-size N              bytes per line, a power of two; 1 treats addresses as block\n" +
+            "                             numbers like the UI does (default: 1)\n" +
+            "  --prefetch none|next|stride|stream\n" +
+            "                             hardware prefetcher in front of the cache; stride tables are keyed by\n" +
+            "                             4 KB region since traces carry no PC (default: none)\n" +
+            "  --prefetch-degree N        lines prefetched per trigger (default: 1)\n" +
+            "  --prefetch-distance N      how many lines/strides ahead the first prefetch is (default: 1)\n" +
+            "  --classify                 split misses into compulsory, capacity and conflict (3C) using a\n" +
+            "                             same-size fully-associative LRU shadow; not for multi-level caches\n" +
+            "  --set-stats                count accesses, misses and evictions per set and histogram reuse\n" +
+            "                             distances; prints the busiest sets of each level\n" +
+            "  --warmup N                 run the first N accesses with stats off, to warm the cache up\n" +
+            "  --load-snapshot FILE       start from the cache state saved in FILE instead of a cold cache\n" +
+            "  --save-snapshot FILE       save the final cache state (lines, replacement state, counters) to\n" +
+            "                             FILE; any cache and policy except opt, not with --threads\n" +
+            "  --sample-sets K            set sampling: simulate only every K-th set and estimate the hit ratio\n" +
+            "                             with a 95% confidence interval (single-level caches)\n" +
+            "  --sample-period P          time sampling: measure the last --sample-detail accesses of every P\n" +
+            "  --sample-detail D          accesses measured per period (default: 1000)\n" +
+            "  --sample-warm W            accesses before each measurement that only warm the cache; the rest\n" +
+            "                             of the period is skipped (default: P - D, i.e. always warm)\n" +
+            "  --report-every N           print stats every N accesses, 0 = only at the end (default: 0)\n" +
+            "  --threads N                split a single-level cache by set across N threads; the trace is\n" +
+            "                             loaded into memory first (default: 1)\n" +
+            "  --chunk-mb N               size of each memory-mapped window in MB (default: 64)\n" +
+            "  --mrc MAX_WAYS             instead of simulating one cache, print the LRU miss-ratio curve for\n" +
+            "                             1..MAX_WAYS ways (powers of two) in a single stack-distance pass\n" +
+            "  --mrc-sets N,N,...         set counts for --mrc, powers of two (default: 1 = fully associative)";
+
+    private String cacheType = "set";
+    private int blocks = 8;
+    private int ways = 2;
+    private int lineSize = 1;
+    private InclusionPolicy inclusion = InclusionPolicy.NINE;
+    private HierarchyConfig hierarchy;
+    private WritePolicy writePolicy = WritePolicy.WRITE_BACK;
+    private String policy = "lru";
+    private OptPolicy optPolicy;
+    private String prefetch = "none";
+    private int prefetchDegree = 1;
+    private int prefetchDistance = 1;
+    private boolean classify = false;
+    private boolean setStats = false;
+    private long reportEvery = 0;
+    private long warmup = 0;
+    private int sampleSets = 1;
+    private long samplePeriod = 0;
+    private long sampleDetail = 1000;
+    private long sampleWarm = -1; // -1 = the whole rest of the period
+    private Path loadSnapshot;
+    private Path saveSnapshot;
+    private int threads = 1;
+    private long chunkSize = MappedTraceReader.DEFAULT_CHUNK_SIZE;
+    private Path tracePath;
+    private int mrcMaxWays = 0;
+    private int[] mrcSets = {1};
+
+    private CacheInterface cache;
+    private long accesses = 0;
+    private long hits = 0;
+    private long writes = 0;
+    private long bytesRead = 0;
+    private long bytesWritten = 0;
+    private final long[] loads = new long[LOAD_BATCH]; // loads not yet handed to the cache
+    private int pendingLoads = 0;
+
+    public static void main(String[] args) {
+        HeadlessMain app = new HeadlessMain();
+        try {
+            app.parseArgs(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+        try {
+            app.run();
+        } catch (IOException e) {
+            System.err.println("I/O error: " + e.getMessage());
+            System.exit(1);
+        } catch (IllegalArgumentException e) {
+            // e.g. a snapshot saved from a differently shaped cache
+            System.err.println("Error: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    private void parseArgs(String[] args) {
+        String cacheOption = null;
+        boolean inclusionGiven = false;
+        boolean lineSizeGiven = false;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                tracePath = Path.of(arg);
+                continue;
+            }
+            if (arg.equals("--classify")) {
+                classify = true;
+                continue;
+            }
+            if (arg.equals("--set-stats")) {
+                setStats = true;
+                continue;
+            }
+            if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + arg);
+            String value = args[++i];
+            switch (arg) {
+                case "--cache":
+                    cacheType = value;
+                    cacheOption = value;
+                    break;
+                case "--blocks":
+                    blocks = parsePositive(arg, value);
+                    break;
+                case "--ways":
+                    ways = parsePositive(arg, value);
+                    break;
+                case "--report-every":
+                    reportEvery = Long.parseLong(value);
+                    break;
+                case "--warmup":
+                    warmup = Long.parseLong(value);
+                    if (warmup < 0) throw new IllegalArgumentException("--warmup needs a non-negative number, got " + value);
+                    break;
+                case "--sample-sets":
+                    sampleSets = parsePositive(arg, value);
+                    break;
+                case "--sample-period":
+                    samplePeriod = parsePositive(arg, value);
+                    break;
+                case "--sample-detail":
+                    sampleDetail = parsePositive(arg, value);
+                    break;
+                case "--sample-warm":
+                    sampleWarm = Long.parseLong(value);
+                    if (sampleWarm < 0) throw new IllegalArgumentException("--sample-warm needs a non-negative number, got " + value);
+                    break;
+                case "--load-snapshot":
+                    loadSnapshot = Path.of(value);
+                    break;
+                case "--save-snapshot":
+                    saveSnapshot = Path.of(value);
+                    break;
+                case "--hierarchy":
+                    try {
+                        hierarchy = HierarchyConfig.load(Path.of(value));
+                    } catch (IOException e) {
+                        throw new IllegalArgumentException("Cannot read hierarchy file " + value + ": " + e.getMessage());
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("Bad hierarchy file " + value + ", " + e.getMessage());
+                    }
+                    cacheType = "multi";
+                    break;
+                case "--write-policy":
+                    if (value.equals("back")) writePolicy = WritePolicy.WRITE_BACK;
+                    else if (value.equals("through")) writePolicy = WritePolicy.WRITE_THROUGH;
+                    else throw new IllegalArgumentException("Unknown write policy " + value);
+                    break;
+                case "--policy":
+                    if (!value.equals("opt")) ReplacementPolicy.of(value);
+                    policy = value;
+                    break;
+                case "--prefetch":
+                    prefetch = value;
+                    break;
+                case "--prefetch-degree":
+                    prefetchDegree = parsePositive(arg, value);
+                    break;
+                case "--prefetch-distance":
+                    prefetchDistance = parsePositive(arg, value);
+                    break;
+                case "--inclusion":
+                    try {
+                        inclusion = InclusionPolicy.valueOf(value.toUpperCase());
+                    } catch (IllegalArgumentException e) {
+                        throw new IllegalArgumentException("Unknown inclusion policy " + value);
+                    }
+                    inclusionGiven = true;
+                    break;
+                case "--line-size":
+                    lineSize = parsePositive(arg, value);
+                    lineSizeGiven = true;
+                    break;
+                case "--threads":
+                    threads = parsePositive(arg, value);
+                    break;
+                case "--chunk-mb":
+                    chunkSize = (long) parsePositive(arg, value) << 20;
+                    break;
+                case "--mrc":
+                    mrcMaxWays = parsePositive(arg, value);
+                    break;
+                case "--mrc-sets":
+                    String[] parts = value.split(",");
+                    mrcSets = new int[parts.length];
+                    for (int p = 0; p < parts.length; p++) mrcSets[p] = parsePositive(arg, parts[p].trim());
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        if (tracePath == null) throw new IllegalArgumentException("No trace file given");
+        if (hierarchy != null) {
+            if (cacheOption != null && !cacheOption.equals("multi")) {
+                throw new IllegalArgumentException("--hierarchy cannot be combined with --cache " + cacheOption);
+            }
+            if (inclusionGiven || lineSizeGiven) {
+                throw new IllegalArgumentException("--hierarchy takes the line size and inclusion from its file; drop --line-size and --inclusion");
+            }
+        }
+        if (cacheType.equals("full")) ways = blocks;
+        if (blocks % ways != 0) throw new IllegalArgumentException("Total blocks must be a multiple of ways");
+        if (Integer.bitCount(lineSize) != 1) throw new IllegalArgumentException("Line size must be a power of two");
+        if (threads > 1 && cacheType.equals("multi")) throw new IllegalArgumentException("--threads only applies to single-level caches");
+        if (!policy.equals("lru") && cacheType.equals("multi")) throw new IllegalArgumentException("--policy only applies to single-level caches");
+        if (!policy.equals("lru") && (cacheType.equals("full") || cacheType.equals("offheap"))) {
+            throw new IllegalArgumentException("The " + cacheType + " cache is LRU only");
+        }
+        // OPT's next-use index follows the whole trace in order
+        if (policy.equals("opt") && threads > 1) throw new IllegalArgumentException("--policy opt cannot be combined with --threads");
+        // a prefetched line has no demand access of its own to take its next use from
+        if (policy.equals("opt") && !prefetch.equals("none")) throw new IllegalArgumentException("--policy opt cannot be combined with --prefetch");
+        if (sampling()) {
+            if (threads > 1 || cacheType.equals("multi") || !prefetch.equals("none") || classify || warmup > 0) {
+                throw new IllegalArgumentException("Sampling runs a single-level cache on one thread, without prefetch, --classify or --warmup");
+            }
+            // skipped accesses would put OPT's position out of step with its next-use index
+            if (policy.equals("opt")) throw new IllegalArgumentException("--policy opt cannot be combined with sampling");
+            if (samplePeriod > 0 && sampleDetail + Math.max(0, sampleWarm) > samplePeriod) {
+                throw new IllegalArgumentException("--sample-detail plus --sample-warm must fit in --sample-period");
+            }
+        }
+        if (threads > 1 && (warmup > 0 || loadSnapshot != null || saveSnapshot != null)) {
+            throw new IllegalArgumentException("--warmup and snapshots cannot be combined with --threads");
+        }
+        if (setStats && threads > 1) throw new IllegalArgumentException("--set-stats cannot be combined with --threads");
+        if (classify && (threads > 1 || cacheType.equals("multi"))) {
+            throw new IllegalArgumentException("--classify only applies to a single-level cache on one thread");
+        }
+        // a prefetch can land in any set, so the cache cannot be split by set
+        if (threads > 1 && !prefetch.equals("none")) throw new IllegalArgumentException("--threads cannot be combined with --prefetch");
+    }
+
+    private static int parsePositive(String option, String value) {
+        try {
+            int n = Integer.parseInt(value);
+            if (n > 0) return n;
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException(option + " needs a positive number, got " + value);
+    }
+
+    private CacheInterface createCache() {
+        CacheInterface cache = createPrefetchingCache();
+        return classify ? new MissClassifier(cache) : cache;
+    }
+
+    private CacheInterface createPrefetchingCache() {
+        CacheInterface cache = createBaseCache();
+        switch (prefetch) {
+            case "none":
+                return cache;
+            case "next":
+                return new PrefetchingCache(cache, new NextLinePrefetcher(cache.getLineSize(), prefetchDegree, prefetchDistance));
+            case "stride":
+                return new PrefetchingCache(cache, new StridePrefetcher(cache.getLineSize(), prefetchDegree, prefetchDistance));
+            case "stream":
+                return new PrefetchingCache(cache, new StreamPrefetcher(cache.getLineSize(), prefetchDegree, prefetchDistance));
+            default:
+                throw new IllegalArgumentException("Unknown prefetcher " + prefetch);
+        }
+    }
+
+    private CacheInterface createBaseCache() {
+        CacheGeometry geometry = new CacheGeometry(lineSize, blocks / ways, ways);
+        switch (cacheType) {
+            case "direct":
+                return new DirectMappedCache(new CacheGeometry(lineSize, blocks, 1), writePolicy);
+            case "set":
+                if (ways == 1) return new DirectMappedCache(geometry, writePolicy);
+                return policy.equals("lru") ? new SetAssociativeCache(geometry, writePolicy)
+                        : new FlatSetAssociativeCache(geometry, writePolicy, replacementPolicy());
+            case "flat":
+                return ways == 1 ? new DirectMappedCache(geometry, writePolicy)
+                        : new FlatSetAssociativeCache(geometry, writePolicy, replacementPolicy());
+            case "offheap":
+                return new OffHeapSetAssociativeCache(geometry, writePolicy);
+            case "full":
+                return new FullyAssociativeCache(new CacheGeometry(lineSize, 1, blocks), writePolicy);
+            case "multi":
+                return (hierarchy != null ? hierarchy : HierarchyConfig.defaults(lineSize, inclusion)).build();
+            default:
+                throw new IllegalArgumentException("Unknown cache type " + cacheType);
+        }
+    }
+
+    private ReplacementPolicy replacementPolicy() {
+        return policy.equals("opt") ? optPolicy : ReplacementPolicy.of(policy);
+    }
+
+    private void run() throws IOException {
+        if (mrcMaxWays > 0) {
+            runMissRatioCurve();
+            return;
+        }
+        if (threads > 1) {
+            runPartitioned();
+            return;
+        }
+        if (sampling()) {
+            runSampled();
+            return;
+        }
+        TraceBuffer trace = null;
+        if (policy.equals("opt")) {
+            trace = TraceBuffer.load(tracePath);
+            optPolicy = new OptPolicy(trace.addresses(), trace.size(), lineSize);
+        }
+        cache = createCache();
+        if (setStats) {
+            for (SetMapped level : setMappedLevels()) level.setSetStatsEnabled(true);
+        }
+        // fail before the run rather than after it
+        if (saveSnapshot != null) snapshotTarget();
+        if (loadSnapshot != null) {
+            long restoreStart = System.nanoTime();
+            CacheSnapshot.restore(snapshotTarget(), loadSnapshot);
+            // the report covers this run only
+            cache.resetStats();
+            System.out.printf("restored %s in %.3fs%n", loadSnapshot, (System.nanoTime() - restoreStart) / 1e9);
+        }
+        long[] warmupLeft = {warmup};
+        TraceSink sink = (address, op) -> {
+            if (warmupLeft[0] > 0) {
+                if (op == BinaryTraceFormat.OP_WRITE) cache.write(address);
+                else cache.access(address);
+                if (--warmupLeft[0] == 0) cache.resetStats();
+                return;
+            }
+            if (op != BinaryTraceFormat.OP_WRITE) {
+                loads[pendingLoads++] = address;
+                // a batch ends early where a progress report is due
+                if (pendingLoads == LOAD_BATCH || (reportEvery > 0 && (accesses + pendingLoads) % reportEvery == 0)) flushLoads();
+                return;
+            }
+            flushLoads();
+            if (cache.write(address)) hits++;
+            writes++;
+            accesses++;
+            if (reportEvery > 0 && accesses % reportEvery == 0) {
+                printStats("progress");
+            }
+        };
+        long start = System.nanoTime();
+        long invalid;
+        if (trace != null) {
+            trace.replay(sink);
+            invalid = trace.getInvalidCount();
+        } else {
+            invalid = readTrace(sink);
+        }
+        flushLoads();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        printStats("final");
+        CacheInterface base = cache;
+        if (base instanceof MissClassifier) {
+            printMissClasses((MissClassifier) base);
+            base = ((MissClassifier) base).getCache();
+        }
+        if (base instanceof PrefetchingCache) {
+            printPrefetchStats((PrefetchingCache) base);
+            base = ((PrefetchingCache) base).getCache();
+        }
+        if (base instanceof MultiLevelCache) printLevelStats((MultiLevelCache) base);
+        if (setStats) printSetStats();
+        printFootprint();
+        if (saveSnapshot != null) {
+            CacheSnapshot.save(snapshotTarget(), saveSnapshot);
+            System.out.printf("saved %s%n", saveSnapshot);
+        }
+        System.out.printf("invalid=%d elapsed=%.3fs rate=%.0f accesses/s%n",
+                invalid, seconds, seconds == 0 ? 0.0 : accesses / seconds);
+    }
+
+    //runs the buffered loads through the cache as one batch
+    private void flushLoads() {
+        if (pendingLoads == 0) return;
+        hits += cache.accessBatch(loads, 0, pendingLoads, null);
+        accesses += pendingLoads;
+        pendingLoads = 0;
+        if (reportEvery > 0 && accesses % reportEvery == 0) {
+            printStats("progress");
+        }
+    }
+
+    //returns the number of invalid tokens, which only text traces can have
+    private long readTrace(TraceSink sink) throws IOException {
+        if (GzipTraceReader.isGzip(tracePath)) {
+            GzipTraceReader reader = new GzipTraceReader(tracePath);
+            reader.read(sink);
+            return reader.getInvalidCount();
+        }
+        if (BinaryTraceReader.isBinaryTrace(tracePath)) {
+            new BinaryTraceReader(tracePath, chunkSize).read(sink);
+            return 0;
+        }
+        MappedTraceReader reader = new MappedTraceReader(tracePath, chunkSize);
+        reader.read(sink);
+        return reader.getInvalidCount();
+    }
+
+    private boolean sampling() {
+        return sampleSets > 1 || samplePeriod > 0;
+    }
+
+    private void runSampled() throws IOException {
+        cache = createCache();
+        if (loadSnapshot != null) {
+            CacheSnapshot.restore(snapshotTarget(), loadSnapshot);
+            cache.resetStats();
+        }
+        long warm = samplePeriod == 0 ? 0 : sampleWarm >= 0 ? sampleWarm : samplePeriod - sampleDetail;
+        SamplingSimulator sampler = new SamplingSimulator(cache, sampleSets, samplePeriod, sampleDetail, warm);
+        long start = System.nanoTime();
+        long invalid = readTrace(sampler);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        SamplingSimulator.Result result = sampler.result();
+        System.out.printf("sampled accesses=%d simulated=%d measured=%d hits=%d samples=%d estimatedHitRatio=%.2f%% ci95=%s%n",
+                result.accesses, result.simulated, result.measured, result.hits, result.samples, result.hitRatio * 100,
+                Double.isNaN(result.halfWidth) ? "n/a" : String.format("+-%.2f%%", result.halfWidth * 100));
+        System.out.printf("invalid=%d elapsed=%.3fs rate=%.0f accesses/s%n",
+                invalid, seconds, seconds == 0 ? 0.0 : result.accesses / seconds);
+    }
+
+    private void runPartitioned() throws IOException {
+        TraceBuffer trace = TraceBuffer.load(tracePath);
+        long start = System.nanoTime();
+        PartitionedSimulator.Result result = new PartitionedSimulator(this::createCache, threads).run(trace);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        accesses = trace.size();
+        hits = result.hits;
+        for (int i = 0; i < trace.size(); i++) {
+            if (trace.op(i) == BinaryTraceFormat.OP_WRITE) writes++;
+        }
+        bytesRead = result.bytesRead;
+        bytesWritten = result.bytesWritten;
+        printStats("final");
+        System.out.printf("invalid=%d elapsed=%.3fs rate=%.0f accesses/s threads=%d%n",
+                trace.getInvalidCount(), seconds, seconds == 0 ? 0.0 : accesses / seconds, threads);
+    }
+
+    private void runMissRatioCurve() throws IOException {
+        StackDistanceAnalyzer[] analyzers = new StackDistanceAnalyzer[mrcSets.length];
+        for (int i = 0; i < mrcSets.length; i++) {
+            analyzers[i] = new StackDistanceAnalyzer(mrcSets[i], mrcMaxWays, lineSize);
+        }
+        readTrace((address, op) -> {
+            for (StackDistanceAnalyzer analyzer : analyzers) analyzer.access(address);
+        });
+        System.out.println("sets,ways,blocks,missRatio");
+        for (StackDistanceAnalyzer analyzer : analyzers) {
+            double[] curve = analyzer.getMissRatioCurve();
+            for (int w = 1; w <= mrcMaxWays; w *= 2) {
+                System.out.printf("%d,%d,%d,%.6f%n", analyzer.getSetCount(), w, (long) w * analyzer.getSetCount(), curve[w]);
+            }
+        }
+    }
+
+    private static final int CONFLICT_SETS_SHOWN = 10;
+    private static final int BUSY_SETS_SHOWN = 10;
+    private static final int LOAD_BATCH = 4096;
+
+    //wrapper state (prefetcher training, 3C shadow) is not part of a snapshot
+    private CacheInterface snapshotTarget() {
+        CacheInterface base = cache instanceof MissClassifier ? ((MissClassifier) cache).getCache() : cache;
+        if (base instanceof PrefetchingCache) base = ((PrefetchingCache) base).getCache();
+        if (!CacheSnapshot.isSupported(base)) {
+            throw new IllegalArgumentException("Snapshots are not supported for the " + cacheType + " cache" +
+                    (policy.equals("lru") ? "" : " with policy " + policy));
+        }
+        return base;
+    }
+
+    //the set-indexed caches under any wrappers: the cache itself, or every level of a hierarchy
+    private List<SetMapped> setMappedLevels() {
+        CacheInterface base = cache instanceof MissClassifier ? ((MissClassifier) cache).getCache() : cache;
+        if (base instanceof PrefetchingCache) base = ((PrefetchingCache) base).getCache();
+        List<SetMapped> levels = new ArrayList<>();
+        if (base instanceof MultiLevelCache) {
+            MultiLevelCache multi = (MultiLevelCache) base;
+            for (int level = 0; level < multi.getLevelCount(); level++) {
+                if (multi.getLevel(level) instanceof SetMapped) levels.add((SetMapped) multi.getLevel(level));
+            }
+        } else if (base instanceof SetMapped) {
+            levels.add((SetMapped) base);
+        }
+        return levels;
+    }
+
+    //off-heap state is not visible in heap statistics, so it is reported separately
+    private void printFootprint() {
+        long bytes = 0;
+        for (SetMapped level : setMappedLevels()) {
+            if (level instanceof OffHeapSetAssociativeCache) bytes += ((OffHeapSetAssociativeCache) level).getFootprintBytes();
+        }
+        if (bytes > 0) System.out.printf("offHeapBytes=%d%n", bytes);
+    }
+
+    private void printSetStats() {
+        List<SetMapped> levels = setMappedLevels();
+        for (int level = 0; level < levels.size(); level++) {
+            SetStats stats = levels.get(level).getSetStats();
+            Integer[] sets = new Integer[stats.getSetCount()];
+            for (int set = 0; set < sets.length; set++) sets[set] = set;
+            Arrays.sort(sets, (a, b) -> Long.compare(stats.getMissCount(b), stats.getMissCount(a)));
+            System.out.printf("L%d busiest sets of %d (set accesses misses evictions):%n", level + 1, sets.length);
+            for (int i = 0; i < Math.min(BUSY_SETS_SHOWN, sets.length); i++) {
+                int set = sets[i];
+                System.out.printf("  %d %d %d %d%n", set, stats.getAccessCount(set), stats.getMissCount(set), stats.getEvictionCount(set));
+            }
+            System.out.printf("L%d reuse distance in accesses (range count): cold %d%n", level + 1, stats.getColdCount());
+            for (int bucket = 0; bucket < SetStats.BUCKETS; bucket++) {
+                if (stats.getReuseCount(bucket) == 0) continue;
+                long low = bucket == 0 ? 0 : 1L << (bucket - 1);
+                long high = bucket == 0 ? 0 : (1L << bucket) - 1;
+                System.out.printf("  %d-%d %d%n", low, high, stats.getReuseCount(bucket));
+            }
+        }
+    }
+
+    private void printMissClasses(MissClassifier classifier) {
+        System.out.printf("compulsory=%d capacity=%d conflict=%d%n", classifier.getCompulsoryMissCount(),
+                classifier.getCapacityMissCount(), classifier.getConflictMissCount());
+        if (classifier.getConflictMissCount() == 0) return;
+        Integer[] sets = new Integer[classifier.getSetCount()];
+        for (int set = 0; set < sets.length; set++) sets[set] = set;
+        Arrays.sort(sets, (a, b) -> Long.compare(classifier.getConflictMissCount(b), classifier.getConflictMissCount(a)));
+        System.out.println("sets with the most conflict misses (set compulsory capacity conflict):");
+        for (int i = 0; i < Math.min(CONFLICT_SETS_SHOWN, sets.length); i++) {
+            int set = sets[i];
+            if (classifier.getConflictMissCount(set) == 0) break;
+            System.out.printf("  %d %d %d %d%n", set, classifier.getCompulsoryMissCount(set),
+                    classifier.getCapacityMissCount(set), classifier.getConflictMissCount(set));
+        }
+    }
+
+    private void printPrefetchStats(PrefetchingCache prefetching) {
+        long misses = accesses - hits;
+        long useful = prefetching.getPrefetchHitCount();
+        System.out.printf("demandHits=%d prefetchHits=%d prefetches=%d uselessPrefetches=%d prefetchEvictions=%d " +
+                        "pollutionMisses=%d accuracy=%.2f%% coverage=%.2f%%%n",
+                prefetching.getDemandHitCount(), useful, prefetching.getPrefetchCount(), prefetching.getUselessPrefetchCount(),
+                prefetching.getPrefetchEvictionCount(), prefetching.getPollutionMissCount(),
+                prefetching.getPrefetchCount() == 0 ? 0.0 : useful * 100.0 / prefetching.getPrefetchCount(),
+                useful + misses == 0 ? 0.0 : useful * 100.0 / (useful + misses));
+    }
+
+    private void printLevelStats(MultiLevelCache multi) {
+        for (int level = 0; level < multi.getLevelCount(); level++) {
+            long reached = multi.getLevelAccessCount(level);
+            long levelMisses = level + 1 < multi.getLevelCount() ? multi.getLevelAccessCount(level + 1) : accesses - hits;
+            System.out.printf("L%d accesses=%d hits=%d misses=%d missRate=%.2f%% latency=%d cycles=%d " +
+                            "bytesRead=%d bytesWritten=%d%n", level + 1,
+                    reached, reached - levelMisses, levelMisses, reached == 0 ? 0.0 : levelMisses * 100.0 / reached,
+                    multi.getHitLatency(level), multi.getLevelCycles(level),
+                    multi.getLevelBytesRead(level), multi.getLevelBytesWritten(level));
+        }
+        System.out.printf("memory accesses=%d latency=%d cycles=%d%n", accesses - hits, multi.getMemoryLatency(),
+                multi.getMemoryCycles());
+        System.out.printf("policy=%s backInvalidations=%d totalCycles=%d amat=%.2f%n", multi.getPolicy(),
+                multi.getBackInvalidationCount(), multi.getTotalCycles(), multi.getAverageAccessTime());
+    }
+
+    //counted here rather than via getHitCount() so that traces beyond 2^31 accesses don't overflow
+    private void printStats(String label) {
+        if (cache != null) {
+            bytesRead = cache.getBytesRead();
+            bytesWritten = cache.getBytesWritten();
+        }
+        long misses = accesses - hits;
+        double ratio = accesses == 0 ? 0 : (hits * 100.0) / accesses;
+        System.out.printf("%s accesses=%d writes=%d hits=%d misses=%d hitRatio=%.2f%% bytesRead=%d bytesWritten=%d",
+                label, accesses, writes, hits, misses, ratio, bytesRead, bytesWritten);
+        CacheInterface base = cache instanceof PrefetchingCache ? ((PrefetchingCache) cache).getCache() : cache;
+        if (base instanceof MultiLevelCache) System.out.printf(" amat=%.2f", ((MultiLevelCache) base).getAverageAccessTime());
+        System.out.println();
+    }
+}
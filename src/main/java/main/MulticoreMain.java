@@ -0,0 +1,129 @@
+//runs one trace per core through private L1/L2 caches and a shared L3 kept coherent with MESI
+package main;
+
+import Cache.*;
+import sim.MulticoreSimulator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class MulticoreMain {
+    private static final String USAGE =
+            "Usage: MulticoreMain [options] <core0-trace> <core1-trace> ...\n" +
+            "  One trace per core, text (R/W/I prefixes mark the operation) or binary, optionally gzipped.\n" +
+            "  --l1 BLOCKS,WAYS           private L1 of each core (default: 64,4)\n" +
+            "  --l2 BLOCKS,WAYS           private L2 of each core, inclusive of L1 (default: 512,8)\n" +
+            "  --l3 BLOCKS,WAYS           shared L3 (default: 4096,16)\n" +
+            "  --line-size N              bytes per line, a power of two (default: 64)\n" +
+            "  --hot N                    lines with the most coherence misses to list (default: 10)";
+
+    private int[] l1 = {64, 4};
+    private int[] l2 = {512, 8};
+    private int[] l3 = {4096, 16};
+    private int lineSize = 64;
+    private int hot = 10;
+    private final List<Path> traces = new ArrayList<>();
+
+    public static void main(String[] args) {
+        MulticoreMain app = new MulticoreMain();
+        MesiSystem system;
+        try {
+            app.parseArgs(args);
+            system = app.createSystem();
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+        try {
+            long start = System.nanoTime();
+            new MulticoreSimulator(system, app.traces).run();
+            app.printStats(system, (System.nanoTime() - start) / 1e9);
+        } catch (IOException e) {
+            System.err.println("Error reading trace: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void parseArgs(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                traces.add(Path.of(arg));
+                continue;
+            }
+            if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + arg);
+            String value = args[++i];
+            switch (arg) {
+                case "--l1": l1 = parseLevel(arg, value); break;
+                case "--l2": l2 = parseLevel(arg, value); break;
+                case "--l3": l3 = parseLevel(arg, value); break;
+                case "--line-size": lineSize = parsePositive(arg, value); break;
+                case "--hot": hot = parsePositive(arg, value); break;
+                default: throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        if (traces.isEmpty()) throw new IllegalArgumentException("No trace files given");
+    }
+
+    private static int[] parseLevel(String option, String value) {
+        String[] parts = value.split(",");
+        if (parts.length != 2) throw new IllegalArgumentException(option + " needs BLOCKS,WAYS, got " + value);
+        int blocks = parsePositive(option, parts[0]);
+        int ways = parsePositive(option, parts[1]);
+        if (blocks % ways != 0) throw new IllegalArgumentException(option + ": blocks must be a multiple of ways");
+        return new int[]{blocks, ways};
+    }
+
+    private static int parsePositive(String option, String value) {
+        try {
+            int n = Integer.parseInt(value.trim());
+            if (n > 0) return n;
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException(option + " needs a positive number, got " + value);
+    }
+
+    private MesiSystem createSystem() {
+        CacheInterface[] cores = new CacheInterface[traces.size()];
+        for (int i = 0; i < cores.length; i++) {
+            cores[i] = new MultiLevelCache(new CacheInterface[]{level(l1), level(l2)}, InclusionPolicy.INCLUSIVE,
+                    new int[]{MultiLevelCache.DEFAULT_HIT_LATENCIES[0], MultiLevelCache.DEFAULT_HIT_LATENCIES[1]},
+                    MultiLevelCache.DEFAULT_MEMORY_LATENCY);
+        }
+        return new MesiSystem(cores, level(l3));
+    }
+
+    private CacheInterface level(int[] config) {
+        return new SetAssociativeCache(new CacheGeometry(lineSize, config[0] / config[1], config[1]));
+    }
+
+    private void printStats(MesiSystem system, double seconds) {
+        long total = 0;
+        for (int core = 0; core < system.getCoreCount(); core++) {
+            long accesses = system.getAccessCount(core);
+            long hits = system.getHitCount(core);
+            total += accesses;
+            System.out.printf("core%d accesses=%d hits=%d misses=%d hitRatio=%.2f%% coherenceMisses=%d falseSharingMisses=%d%n",
+                    core, accesses, hits, accesses - hits, accesses == 0 ? 0.0 : hits * 100.0 / accesses,
+                    system.getCoherenceMissCount(core), system.getFalseSharingMissCount(core));
+        }
+        CacheInterface shared = system.getSharedCache();
+        int l3Accesses = shared.getHitCount() + shared.getMissCount();
+        System.out.printf("L3 accesses=%d hits=%d misses=%d hitRatio=%.2f%%%n", l3Accesses, shared.getHitCount(),
+                shared.getMissCount(), l3Accesses == 0 ? 0.0 : shared.getHitCount() * 100.0 / l3Accesses);
+        System.out.printf("invalidations=%d upgrades=%d cacheToCache=%d writeBacks=%d%n", system.getInvalidationCount(),
+                system.getUpgradeCount(), system.getCacheToCacheCount(), system.getWriteBackCount());
+        List<MesiSystem.HotLine> lines = system.getHotLines(hot);
+        if (!lines.isEmpty()) System.out.println("hot lines (coherence misses, false sharing):");
+        for (MesiSystem.HotLine line : lines) {
+            System.out.printf("  0x%x %d %d%n", line.lineAddress, line.coherenceMisses, line.falseSharingMisses);
+        }
+        System.out.printf("elapsed=%.3fs rate=%.0f accesses/s%n", seconds, seconds == 0 ? 0.0 : total / seconds);
+    }
+}
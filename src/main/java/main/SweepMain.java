@@ -0,0 +1,140 @@
+//simulates a grid of cache configurations against one trace in parallel
+package main;
+
+import sim.SweepPoint;
+import sim.SweepRunner;
+import trace.TraceBuffer;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SweepMain {
+    private static final String USAGE =
+            "Usage: SweepMain [options] <trace-file>\n" +
+            "  --blocks N,N,...    total blocks of each configuration (default: 8)\n" +
+            "  --ways N,N,...      associativities, 1 = direct-mapped (default: 1,2,4)\n" +
+            "  --line-size N       bytes per line, a power of two (default: 1, addresses are block numbers)\n" +
+            "  --levels N,N,...    1 = single cache, 3 = L1/L2/L3 hierarchy sized from blocks/ways (default: 1)\n" +
+            "  --threads N         worker threads (default: all cores)\n" +
+            "  --format csv|json   output format (default: csv)\n" +
+            "  --out FILE          write the table to FILE instead of stdout";
+
+    public static void main(String[] args) {
+        int[] blocks = {8};
+        int[] ways = {1, 2, 4};
+        int[] levels = {1};
+        int lineSize = 1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        String format = "csv";
+        Path out = null;
+        Path tracePath = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (!arg.startsWith("--")) {
+                    tracePath = Path.of(arg);
+                    continue;
+                }
+                if (i + 1 >= args.length) throw new IllegalArgumentException("Missing value for " + arg);
+                String value = args[++i];
+                switch (arg) {
+                    case "--blocks": blocks = parseList(value); break;
+                    case "--ways": ways = parseList(value); break;
+                    case "--levels": levels = parseList(value); break;
+                    case "--line-size":
+                        lineSize = parseList(value)[0];
+                        if (lineSize <= 0 || Integer.bitCount(lineSize) != 1) {
+                            throw new IllegalArgumentException("Line size must be a power of two: " + value);
+                        }
+                        break;
+                    case "--threads": threads = parseList(value)[0]; break;
+                    case "--format": format = value; break;
+                    case "--out": out = Path.of(value); break;
+                    default: throw new IllegalArgumentException("Unknown option " + arg);
+                }
+            }
+            if (tracePath == null) throw new IllegalArgumentException("No trace file given");
+            if (!format.equals("csv") && !format.equals("json")) throw new IllegalArgumentException("Unknown format " + format);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        List<SweepPoint> points = new ArrayList<>();
+        for (int l : levels) {
+            for (int b : blocks) {
+                for (int w : ways) {
+                    try {
+                        points.add(new SweepPoint(b, w, l, lineSize));
+                    } catch (IllegalArgumentException e) {
+                        System.err.printf("Skipping %d blocks / %d ways / %d levels: %s%n", b, w, l, e.getMessage());
+                    }
+                }
+            }
+        }
+
+        try {
+            long start = System.nanoTime();
+            TraceBuffer trace = TraceBuffer.load(tracePath);
+            long loaded = System.nanoTime();
+            List<SweepRunner.Result> results = new SweepRunner(trace, threads).run(points);
+            long done = System.nanoTime();
+            if (out == null) {
+                write(System.out, format, results);
+                System.out.flush();
+            } else {
+                try (PrintStream output = new PrintStream(out.toFile())) {
+                    write(output, format, results);
+                }
+            }
+            System.err.printf("%d accesses, %d configurations, %d threads: decode %.3fs, simulate %.3fs%n",
+                    trace.size(), points.size(), threads, (loaded - start) / 1e9, (done - loaded) / 1e9);
+        } catch (IOException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void write(PrintStream output, String format, List<SweepRunner.Result> results) {
+        if (format.equals("json")) writeJson(output, results);
+        else writeCsv(output, results);
+    }
+
+    private static int[] parseList(String value) {
+        String[] parts = value.split(",");
+        int[] numbers = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            try {
+                numbers[i] = Integer.parseInt(parts[i].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number: " + parts[i]);
+            }
+            if (numbers[i] <= 0) throw new IllegalArgumentException("Values must be positive: " + value);
+        }
+        return numbers;
+    }
+
+    private static void writeCsv(PrintStream out, List<SweepRunner.Result> results) {
+        out.println("levels,blocks,ways,lineSize,hits,misses,hitRatio,bytesRead,bytesWritten");
+        for (SweepRunner.Result r : results) {
+            out.printf("%d,%d,%d,%d,%d,%d,%.6f,%d,%d%n", r.point.getLevels(), r.point.getBlocks(), r.point.getWays(), r.point.getLineSize(),
+                    r.hits, r.misses, r.getHitRatio(), r.bytesRead, r.bytesWritten);
+        }
+    }
+
+    private static void writeJson(PrintStream out, List<SweepRunner.Result> results) {
+        out.println("[");
+        for (int i = 0; i < results.size(); i++) {
+            SweepRunner.Result r = results.get(i);
+            out.printf("  {\"levels\": %d, \"blocks\": %d, \"ways\": %d, \"lineSize\": %d, \"hits\": %d, \"misses\": %d, \"hitRatio\": %.6f, " +
+                            "\"bytesRead\": %d, \"bytesWritten\": %d}%s%n",
+                    r.point.getLevels(), r.point.getBlocks(), r.point.getWays(), r.point.getLineSize(), r.hits, r.misses, r.getHitRatio(),
+                    r.bytesRead, r.bytesWritten, i + 1 < results.size() ? "," : "");
+        }
+        out.println("]");
+    }
+}
@@ -0,0 +1,105 @@
+package sim;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes log lines to a file without blocking the simulation on disk I/O. Lines are encoded
+ * into one of two direct buffers; a full buffer is handed to a background thread that writes
+ * it to the channel while the simulation fills the other one. If the disk falls two buffers
+ * behind, write() waits for it.
+ */
+public class AccessLogWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final ExecutorService io;
+    private final BlockingQueue<ByteBuffer> free = new ArrayBlockingQueue<>(2);
+    private ByteBuffer current;
+    private volatile IOException failure;
+    private volatile boolean closed = false;
+
+    public AccessLogWriter(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        io = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "access-log-writer");
+            t.setDaemon(true);
+            return t;
+        });
+        free.add(ByteBuffer.allocateDirect(BUFFER_SIZE));
+        current = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    //appends the line and a newline; characters outside ASCII are written as '?'
+    public void write(CharSequence line) {
+        if (current.remaining() < line.length() + 1) {
+            handOff();
+            if (line.length() + 1 > current.capacity()) line = line.subSequence(0, current.capacity() - 1);
+        }
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            current.put(c < 128 ? (byte) c : (byte) '?');
+        }
+        current.put((byte) '\n');
+    }
+
+    private void handOff() {
+        if (failure != null) throw new UncheckedIOException(failure);
+        ByteBuffer full = current;
+        full.flip();
+        io.execute(() -> {
+            try {
+                while (full.hasRemaining()) channel.write(full);
+            } catch (IOException e) {
+                failure = e;
+            }
+            full.clear();
+            free.add(full);
+        });
+        // exactly two buffers exist; wait for the other one even if interrupted, then restore the flag
+        boolean interrupted = false;
+        while (true) {
+            try {
+                current = free.take();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        // a cancelled simulation thread may still carry its interrupt; finish the file first
+        boolean interrupted = Thread.interrupted();
+        try {
+            if (current.position() > 0) handOff();
+            io.shutdown();
+            io.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            interrupted = true;
+        } finally {
+            channel.close();
+            closed = true;
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+        if (failure != null) throw failure;
+    }
+}
@@ -0,0 +1,130 @@
+package sim;
+
+import Cache.MesiSystem;
+import trace.BinaryTraceFormat;
+import trace.BinaryTraceReader;
+import trace.GzipTraceReader;
+import trace.MappedTraceReader;
+import trace.TraceSink;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Runs one trace per core through a MesiSystem. Each trace is decoded on its own thread into
+ * batches handed over through a small bounded queue; the coherence model itself runs on the
+ * calling thread, so results never depend on thread timing.
+ *
+ * Traces carry no timestamps, so an access's timestamp is its position in its own trace: the
+ * merge takes access 0 of core 0, 1, ..., then access 1 of each core, and so on, with cores
+ * whose trace has ended dropping out.
+ */
+public class MulticoreSimulator {
+    private static final int BATCH_SIZE = 4096;
+    private static final int QUEUE_DEPTH = 4;
+    private static final Batch END = new Batch();
+
+    private final MesiSystem system;
+    private final List<Path> traces;
+
+    private static class Batch {
+        final long[] addresses = new long[BATCH_SIZE];
+        final byte[] ops = new byte[BATCH_SIZE];
+        int size;
+    }
+
+    private static class Decoder extends Thread {
+        final Path path;
+        final BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUE_DEPTH);
+        volatile Exception failure;
+        Batch current = new Batch();
+
+        Decoder(Path path, int core) {
+            super("trace-decoder-" + core);
+            this.path = path;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            TraceSink sink = (address, op) -> {
+                current.addresses[current.size] = address;
+                current.ops[current.size] = (byte) op;
+                if (++current.size == BATCH_SIZE) hand(new Batch());
+            };
+            try {
+                if (GzipTraceReader.isGzip(path)) {
+                    new GzipTraceReader(path).read(sink);
+                } else if (BinaryTraceReader.isBinaryTrace(path)) {
+                    new BinaryTraceReader(path).read(sink);
+                } else {
+                    new MappedTraceReader(path).read(sink);
+                }
+                if (current.size > 0) hand(null);
+            } catch (CancellationException e) {
+                // the simulation stopped early
+            } catch (IOException | RuntimeException e) {
+                failure = e;
+            }
+            try {
+                queue.put(END);
+            } catch (InterruptedException e) {
+                // nobody is waiting for the end any more
+            }
+        }
+
+        private void hand(Batch next) {
+            try {
+                queue.put(current);
+            } catch (InterruptedException e) {
+                throw new CancellationException();
+            }
+            current = next;
+        }
+    }
+
+    public MulticoreSimulator(MesiSystem system, List<Path> traces) {
+        if (traces.size() != system.getCoreCount()) {
+            throw new IllegalArgumentException(system.getCoreCount() + " cores need as many traces, got " + traces.size());
+        }
+        this.system = system;
+        this.traces = traces;
+    }
+
+    public void run() throws IOException, InterruptedException {
+        int cores = traces.size();
+        Decoder[] decoders = new Decoder[cores];
+        for (int core = 0; core < cores; core++) {
+            decoders[core] = new Decoder(traces.get(core), core);
+            decoders[core].start();
+        }
+        Batch[] batches = new Batch[cores];
+        int[] positions = new int[cores];
+        int active = cores;
+        try {
+            while (active > 0) {
+                for (int core = 0; core < cores; core++) {
+                    if (batches[core] == END) continue;
+                    if (batches[core] == null || positions[core] == batches[core].size) {
+                        batches[core] = decoders[core].queue.take();
+                        positions[core] = 0;
+                        if (batches[core] == END) {
+                            if (decoders[core].failure != null) throw new IOException("Reading " + traces.get(core), decoders[core].failure);
+                            active--;
+                            continue;
+                        }
+                    }
+                    Batch batch = batches[core];
+                    int i = positions[core]++;
+                    system.access(core, batch.addresses[i], batch.ops[i] == BinaryTraceFormat.OP_WRITE);
+                }
+            }
+        } finally {
+            for (Decoder decoder : decoders) decoder.interrupt();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package sim;
+
+import Cache.CacheInterface;
+import Cache.SetMapped;
+import trace.BinaryTraceFormat;
+import trace.TraceBuffer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Supplier;
+
+/**
+ * Simulates one single-level cache on several threads by splitting it by set. Sets never
+ * interact, so each worker owns a contiguous range of sets. One pass over the trace sorts the
+ * access indices by worker, keeping trace order within each worker, and each worker then
+ * performs only its own accesses. Every set therefore sees exactly the same sequence as in a
+ * sequential run and the merged counts are identical to it.
+ *
+ * Each worker uses its own cache instance from the factory (only its own sets are ever filled)
+ * and counts into arrays of its own, which are merged once all workers are done.
+ */
+public class PartitionedSimulator {
+    private final Supplier<? extends CacheInterface> factory;
+    private final int parallelism;
+
+    public static class Result {
+        public final long hits;
+        public final long misses;
+        public final long[] setHits;
+        public final long[] setMisses;
+        public final long bytesRead;
+        public final long bytesWritten;
+
+        Result(long[] setHits, long[] setMisses, long bytesRead, long bytesWritten) {
+            this.setHits = setHits;
+            this.setMisses = setMisses;
+            this.bytesRead = bytesRead;
+            this.bytesWritten = bytesWritten;
+            long h = 0;
+            long m = 0;
+            for (int i = 0; i < setHits.length; i++) {
+                h += setHits[i];
+                m += setMisses[i];
+            }
+            this.hits = h;
+            this.misses = m;
+        }
+    }
+
+    public PartitionedSimulator(Supplier<? extends CacheInterface> factory, int parallelism) {
+        this.factory = factory;
+        this.parallelism = parallelism;
+    }
+
+    public Result run(TraceBuffer trace) {
+        CacheInterface probe = factory.get();
+        if (!(probe instanceof SetMapped)) {
+            throw new IllegalArgumentException(probe.getClass().getSimpleName() + " cannot be partitioned by set");
+        }
+        int sets = ((SetMapped) probe).getSetCount();
+        long[] setHits = new long[sets];
+        long[] setMisses = new long[sets];
+        int workers = Math.min(parallelism, sets);
+        int[] owner = new int[sets];
+        int[] firstSet = new int[workers + 1];
+        for (int w = 0; w < workers; w++) {
+            firstSet[w] = (int) ((long) sets * w / workers);
+            firstSet[w + 1] = (int) ((long) sets * (w + 1) / workers);
+            for (int set = firstSet[w]; set < firstSet[w + 1]; set++) owner[set] = w;
+        }
+        int[] start = new int[workers + 1];
+        int[] order = partition(trace, (SetMapped) probe, owner, start);
+
+        List<RecursiveAction> tasks = new ArrayList<>();
+        List<CacheInterface> caches = new ArrayList<>();
+        for (int w = 0; w < workers; w++) {
+            int first = firstSet[w];
+            int last = firstSet[w + 1];
+            int from = start[w];
+            int to = start[w + 1];
+            CacheInterface cache = w == 0 ? probe : factory.get();
+            caches.add(cache);
+            tasks.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    long[] hits = new long[last - first];
+                    long[] misses = new long[last - first];
+                    simulate(cache, trace, order, from, to, first, hits, misses);
+                    System.arraycopy(hits, 0, setHits, first, hits.length);
+                    System.arraycopy(misses, 0, setMisses, first, misses.length);
+                }
+            });
+        }
+        ForkJoinPool pool = new ForkJoinPool(workers);
+        try {
+            pool.submit(() -> RecursiveAction.invokeAll(tasks)).join();
+        } finally {
+            pool.shutdown();
+        }
+        long bytesRead = 0;
+        long bytesWritten = 0;
+        for (CacheInterface cache : caches) {
+            bytesRead += cache.getBytesRead();
+            bytesWritten += cache.getBytesWritten();
+        }
+        return new Result(setHits, setMisses, bytesRead, bytesWritten);
+    }
+
+    //a counting sort of the access indices by owning worker; worker w's accesses end up in
+    //order[start[w]..start[w + 1]), still in trace order
+    private static int[] partition(TraceBuffer trace, SetMapped mapping, int[] owner, int[] start) {
+        long[] addresses = trace.addresses();
+        int size = trace.size();
+        int[] workerOf = new int[size];
+        for (int i = 0; i < size; i++) {
+            int w = owner[mapping.setIndexOf(addresses[i])];
+            workerOf[i] = w;
+            start[w + 1]++;
+        }
+        for (int w = 1; w < start.length; w++) start[w] += start[w - 1];
+        int[] next = start.clone();
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) order[next[workerOf[i]]++] = i;
+        return order;
+    }
+
+    //counts go to hits/misses indexed by set - first, which only this worker touches
+    private static void simulate(CacheInterface cache, TraceBuffer trace, int[] order, int from, int to, int first,
+                                 long[] hits, long[] misses) {
+        SetMapped mapping = (SetMapped) cache;
+        long[] addresses = trace.addresses();
+        for (int k = from; k < to; k++) {
+            int i = order[k];
+            long address = addresses[i];
+            boolean hit = trace.op(i) == BinaryTraceFormat.OP_WRITE ? cache.write(address) : cache.access(address);
+            int set = mapping.setIndexOf(address) - first;
+            if (hit) hits[set]++;
+            else misses[set]++;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package sim;
+
+import Cache.CacheInterface;
+import Cache.SetMapped;
+import trace.BinaryTraceFormat;
+import trace.TraceSink;
+
+/**
+ * Estimates a cache's hit ratio from part of the work, with a 95% confidence interval.
+ *
+ * Set sampling simulates about one set in setStride and drops accesses that map anywhere else, so
+ * each sampled set behaves exactly as in a full run. Sets are picked by a hash of their index
+ * rather than by stride, since power-of-two strides line up with the strides of real data
+ * structures and would bias the estimate.
+ *
+ * Time sampling splits the trace into periods. Each period skips its first accesses, then warms
+ * the cache functionally over the next warm accesses (the cache is updated but nothing is
+ * counted), then measures the last detail accesses. warm = period - detail warms continuously,
+ * which removes cold-start bias at the price of simulating every access.
+ *
+ * The estimate is the ratio of measured hits to measured accesses. Its interval comes from the
+ * spread of that ratio across sampling units: measurement intervals when time sampling, otherwise
+ * sets (with a finite-population correction). Normal quantiles are used, which assumes a few
+ * dozen units or more.
+ */
+public class SamplingSimulator implements TraceSink {
+    private static final double Z95 = 1.96;
+    private static final long SEED = 0x9E3779B97F4A7C15L; // so that set 0 is not always sampled (mix(0) == 0)
+
+    private final CacheInterface cache;
+    private final SetMapped mapping;
+    private final boolean[] sampledSets;
+    private final long period;
+    private final long skip;   // accesses at the start of each period that are dropped
+    private final long measureFrom;
+    private final long[] setHits;
+    private final long[] setAccesses;
+    private long seen = 0;
+    private long simulated = 0;
+    private long measured = 0;
+    private long hits = 0;
+    // current measurement interval, and sums over closed ones for the variance
+    private long intervalHits = 0;
+    private long intervalAccesses = 0;
+    private long intervals = 0;
+    private double sumHits2 = 0;
+    private double sumAccesses2 = 0;
+    private double sumCross = 0;
+
+    public static class Result {
+        public final long accesses;   // in the trace
+        public final long simulated;  // run through the cache, warming included
+        public final long measured;
+        public final long hits;
+        public final long samples;    // sampling units behind the interval
+        public final double hitRatio;
+        public final double halfWidth; // of the 95% confidence interval, NaN with fewer than 2 units
+
+        Result(long accesses, long simulated, long measured, long hits, long samples, double hitRatio, double halfWidth) {
+            this.accesses = accesses;
+            this.simulated = simulated;
+            this.measured = measured;
+            this.hits = hits;
+            this.samples = samples;
+            this.hitRatio = hitRatio;
+            this.halfWidth = halfWidth;
+        }
+    }
+
+    //setStride 1 and period 0 turn the respective sampling off
+    public SamplingSimulator(CacheInterface cache, int setStride, long period, long detail, long warm) {
+        if (setStride < 1) throw new IllegalArgumentException("Set stride must be positive");
+        if (setStride > 1 && !(cache instanceof SetMapped)) {
+            throw new IllegalArgumentException("Set sampling needs a set-indexed single-level cache");
+        }
+        if (period < 0 || (period > 0 && (detail < 1 || warm < 0 || detail + warm > period))) {
+            throw new IllegalArgumentException("Time sampling needs 0 < detail and detail + warm <= period");
+        }
+        this.cache = cache;
+        this.mapping = setStride > 1 ? (SetMapped) cache : null;
+        this.period = period;
+        this.skip = period == 0 ? 0 : period - detail - warm;
+        this.measureFrom = period == 0 ? 0 : period - detail;
+        int sets = mapping != null ? mapping.getSetCount() : 0;
+        this.setHits = new long[sets];
+        this.setAccesses = new long[sets];
+        this.sampledSets = new boolean[sets];
+        for (int set = 0; set < sets; set++) sampledSets[set] = Long.remainderUnsigned(mix(set + SEED), setStride) == 0;
+    }
+
+    //murmur3 finaliser
+    private static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        key *= 0xc4ceb9fe1a85ec53L;
+        key ^= key >>> 33;
+        return key;
+    }
+
+    @Override
+    public void accept(long address, int op) {
+        long position = period == 0 ? 0 : seen % period;
+        seen++;
+        if (position < skip) return;
+        boolean measure = position >= measureFrom;
+        int set = -1;
+        if (mapping != null) {
+            set = mapping.setIndexOf(address);
+            if (!sampledSets[set]) {
+                if (position == period - 1) closeInterval();
+                return;
+            }
+        }
+        boolean hit = op == BinaryTraceFormat.OP_WRITE ? cache.write(address) : cache.access(address);
+        simulated++;
+        if (measure) {
+            measured++;
+            intervalAccesses++;
+            if (hit) {
+                hits++;
+                intervalHits++;
+            }
+            if (set >= 0) {
+                setAccesses[set]++;
+                if (hit) setHits[set]++;
+            }
+        }
+        if (period > 0 && position == period - 1) closeInterval();
+    }
+
+    private void closeInterval() {
+        if (intervalAccesses == 0) return;
+        intervals++;
+        sumHits2 += (double) intervalHits * intervalHits;
+        sumAccesses2 += (double) intervalAccesses * intervalAccesses;
+        sumCross += (double) intervalHits * intervalAccesses;
+        intervalHits = 0;
+        intervalAccesses = 0;
+    }
+
+    public Result result() {
+        closeInterval();
+        double ratio = measured == 0 ? 0 : hits / (double) measured;
+        long units;
+        double sumHits2, sumAccesses2, sumCross;
+        double correction = 1;
+        if (period > 0 || mapping == null) {
+            units = intervals;
+            sumHits2 = this.sumHits2;
+            sumAccesses2 = this.sumAccesses2;
+            sumCross = this.sumCross;
+        } else {
+            units = 0;
+            sumHits2 = 0;
+            sumAccesses2 = 0;
+            sumCross = 0;
+            for (int set = 0; set < setAccesses.length; set++) {
+                if (!sampledSets[set]) continue;
+                units++;
+                sumHits2 += (double) setHits[set] * setHits[set];
+                sumAccesses2 += (double) setAccesses[set] * setAccesses[set];
+                sumCross += (double) setHits[set] * setAccesses[set];
+            }
+            correction = 1 - units / (double) setAccesses.length;
+        }
+        double halfWidth = Double.NaN;
+        if (units >= 2 && measured > 0) {
+            // variance of a ratio estimator: sum over units of (hits - ratio * accesses)^2
+            double residuals = sumHits2 - 2 * ratio * sumCross + ratio * ratio * sumAccesses2;
+            double mean = measured / (double) units;
+            double variance = correction * Math.max(0, residuals) / (units * (units - 1) * mean * mean);
+            halfWidth = Z95 * Math.sqrt(variance);
+        }
+        return new Result(seen, simulated, measured, hits, units, ratio, halfWidth);
+    }
+}
@@ -0,0 +1,66 @@
+package sim;
+
+import Cache.*;
+
+/**
+ * One configuration of a design-space sweep. A single-level point is a direct-mapped cache
+ * when ways is 1 and a set-associative cache otherwise. A three-level point uses blocks/ways
+ * for L3 and scales the upper levels the same way as the UI's Multi-Level preset
+ * (L1 4 blocks direct-mapped, L2 8 blocks 2-way, L3 16 blocks 4-way):
+ * L2 gets half the blocks and half the ways, L1 a quarter of the blocks, direct-mapped.
+ */
+public class SweepPoint {
+    private final int blocks;
+    private final int ways;
+    private final int levels;
+    private final int lineSize;
+
+    public SweepPoint(int blocks, int ways, int levels) {
+        this(blocks, ways, levels, 1);
+    }
+
+    public SweepPoint(int blocks, int ways, int levels, int lineSize) {
+        if (blocks <= 0 || ways <= 0 || blocks % ways != 0) {
+            throw new IllegalArgumentException("Total blocks must be a positive multiple of ways: " + blocks + "/" + ways);
+        }
+        if (levels != 1 && levels != 3) throw new IllegalArgumentException("Levels must be 1 or 3");
+        if (levels == 3 && blocks < 4) throw new IllegalArgumentException("A three-level point needs at least 4 blocks");
+        if (levels == 3 && (blocks / 2) % Math.max(1, ways / 2) != 0) {
+            throw new IllegalArgumentException("L2 blocks must be a multiple of L2 ways: " + blocks / 2 + "/" + ways / 2);
+        }
+        this.blocks = blocks;
+        this.ways = ways;
+        this.levels = levels;
+        this.lineSize = lineSize;
+    }
+
+    public CacheInterface createCache() {
+        if (levels == 1) return createLevel(blocks, ways);
+        int l2Ways = Math.max(1, ways / 2);
+        return new MultiLevelCache(createLevel(blocks / 4, 1), createLevel(blocks / 2, l2Ways), createLevel(blocks, ways));
+    }
+
+    private CacheInterface createLevel(int blocks, int ways) {
+        if (ways == 1) return new DirectMappedCache(blocks, lineSize);
+        if (blocks % ways != 0) {
+            throw new IllegalArgumentException("Total blocks must be a positive multiple of ways: " + blocks + "/" + ways);
+        }
+        return new SetAssociativeCache(new CacheGeometry(lineSize, blocks / ways, ways));
+    }
+
+    public int getBlocks() {
+        return blocks;
+    }
+
+    public int getWays() {
+        return ways;
+    }
+
+    public int getLevels() {
+        return levels;
+    }
+
+    public int getLineSize() {
+        return lineSize;
+    }
+}
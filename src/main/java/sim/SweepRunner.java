@@ -0,0 +1,88 @@
+package sim;
+
+import Cache.CacheInterface;
+import trace.BinaryTraceFormat;
+import trace.TraceBuffer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Simulates every point of a sweep against one shared, already decoded trace. Each point gets
+ * its own cache instance and runs as its own fork-join task; the trace is only read.
+ */
+public class SweepRunner {
+    private final TraceBuffer trace;
+    private final int parallelism;
+
+    public static class Result {
+        public final SweepPoint point;
+        public final long hits;
+        public final long misses;
+        public final long bytesRead;    // from memory
+        public final long bytesWritten; // to memory
+
+        Result(SweepPoint point, long hits, long misses, long bytesRead, long bytesWritten) {
+            this.point = point;
+            this.hits = hits;
+            this.misses = misses;
+            this.bytesRead = bytesRead;
+            this.bytesWritten = bytesWritten;
+        }
+
+        public double getHitRatio() {
+            long total = hits + misses;
+            return total == 0 ? 0 : hits / (double) total;
+        }
+    }
+
+    public SweepRunner(TraceBuffer trace, int parallelism) {
+        this.trace = trace;
+        this.parallelism = parallelism;
+    }
+
+    //results come back in the same order as the points
+    public List<Result> run(List<SweepPoint> points) {
+        Result[] results = new Result[points.size()];
+        List<RecursiveAction> tasks = new ArrayList<>();
+        for (int i = 0; i < points.size(); i++) {
+            int slot = i;
+            tasks.add(new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    results[slot] = simulate(points.get(slot));
+                }
+            });
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.submit(() -> RecursiveAction.invokeAll(tasks)).join();
+        } finally {
+            pool.shutdown();
+        }
+        return List.of(results);
+    }
+
+    private Result simulate(SweepPoint point) {
+        CacheInterface cache = point.createCache();
+        long[] addresses = trace.addresses();
+        int size = trace.size();
+        long hits = 0;
+        int i = 0;
+        while (i < size) {
+            if (trace.op(i) == BinaryTraceFormat.OP_WRITE) {
+                if (cache.write(addresses[i])) hits++;
+                i++;
+                continue;
+            }
+            // each run of loads between two stores goes to the cache as one batch
+            int end = i + 1;
+            while (end < size && trace.op(end) != BinaryTraceFormat.OP_WRITE) end++;
+            hits += cache.accessBatch(addresses, i, end - i, null);
+            i = end;
+        }
+        return new Result(point, hits, size - hits, cache.getBytesRead(), cache.getBytesWritten());
+    }
+}
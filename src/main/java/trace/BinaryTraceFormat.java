@@ -0,0 +1,32 @@
+package trace;
+
+/**
+ * Layout of the compact binary trace format (.ctrc).
+ *
+ * Header, 16 bytes little-endian: magic "CTRC", version, address width in bytes (4 or 8),
+ * encoding, one reserved byte, then the record count as a long.
+ *
+ * FIXED records are an op byte followed by the address in "width" bytes.
+ * DELTA records are a single LEB128 varint of (zigzag(address - previous) << 2 | op);
+ * a delta too wide to leave room for the op bits is written as the varint ESCAPE followed by
+ * the absolute address (8 bytes) and the op byte.
+ */
+public final class BinaryTraceFormat {
+    public static final int MAGIC = 0x43525443; // "CTRC" read as a little-endian int
+    public static final byte VERSION = 1;
+    public static final int HEADER_SIZE = 16;
+
+    public static final byte ENCODING_FIXED = 0;
+    public static final byte ENCODING_DELTA = 1;
+
+    public static final int OP_READ = 0;
+    public static final int OP_WRITE = 1;
+    public static final int OP_FETCH = 2;
+    static final int ESCAPE = 3;
+
+    //longest possible record: escape varint + 8 address bytes + op byte
+    static final int MAX_RECORD_SIZE = 10;
+
+    private BinaryTraceFormat() {
+    }
+}
@@ -0,0 +1,191 @@
+package trace;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Decodes a binary trace (see BinaryTraceFormat) straight out of a ByteBuffer. Files are
+ * memory-mapped in windows; decoding allocates nothing per record.
+ */
+public class BinaryTraceReader {
+    private final Path path;
+    private final long chunkSize;
+    private final int addressWidth;
+    private final byte encoding;
+    private final long recordCount;
+    private long previous = 0; // last decoded address, carried across windows for DELTA traces
+    private static final int MAX_VARINT_SIZE = 10;
+    // longest record even a corrupt file can make decode() read: the longest varint plus an escape
+    private static final int SAFE_RECORD_SIZE = MAX_VARINT_SIZE + Long.BYTES + 1;
+
+    public BinaryTraceReader(Path path) throws IOException {
+        this(path, MappedTraceReader.DEFAULT_CHUNK_SIZE);
+    }
+
+    public BinaryTraceReader(Path path, long chunkSize) throws IOException {
+        if (chunkSize <= 0 || chunkSize > Integer.MAX_VALUE - BinaryTraceFormat.MAX_RECORD_SIZE) {
+            throw new IllegalArgumentException("Invalid chunk size " + chunkSize);
+        }
+        this.path = path;
+        this.chunkSize = chunkSize;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(BinaryTraceFormat.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            while (header.hasRemaining() && channel.read(header) >= 0) ;
+            header.flip();
+            if (header.remaining() < BinaryTraceFormat.HEADER_SIZE || header.getInt() != BinaryTraceFormat.MAGIC) {
+                throw new IOException("Not a binary trace: " + path);
+            }
+            byte version = header.get();
+            if (version != BinaryTraceFormat.VERSION) throw new IOException("Unsupported trace version " + version);
+            addressWidth = header.get();
+            encoding = header.get();
+            header.get();
+            recordCount = header.getLong();
+        }
+    }
+
+    private BinaryTraceReader(Path path, long chunkSize, int addressWidth, byte encoding, long recordCount) {
+        this.path = path;
+        this.chunkSize = chunkSize;
+        this.addressWidth = addressWidth;
+        this.encoding = encoding;
+        this.recordCount = recordCount;
+    }
+
+    public static boolean isBinaryTrace(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) ;
+            return magic.position() == 4 && magic.getInt(0) == BinaryTraceFormat.MAGIC;
+        }
+    }
+
+    public int getAddressWidth() {
+        return addressWidth;
+    }
+
+    public byte getEncoding() {
+        return encoding;
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    public void read(TraceSink sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long pos = BinaryTraceFormat.HEADER_SIZE;
+            long remaining = recordCount;
+            previous = 0;
+            while (remaining > 0 && pos < size) {
+                // windows overlap by one record so a record never straddles two mappings
+                long length = Math.min(chunkSize + BinaryTraceFormat.MAX_RECORD_SIZE, size - pos);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, pos, length);
+                window.order(ByteOrder.LITTLE_ENDIAN);
+                long decoded = decode(window, (int) Math.min(chunkSize, length), remaining, sink);
+                if (decoded == 0) break;
+                remaining -= decoded;
+                pos += window.position();
+            }
+            if (remaining > 0) throw truncated(path, remaining);
+        }
+    }
+
+    static IOException truncated(Object source, long missing) {
+        return new IOException("Truncated or corrupt binary trace " + source + ": " + missing + " records missing");
+    }
+
+    //decodes every record of a trace that is already in memory, header included
+    public static void read(ByteBuffer trace, TraceSink sink) throws IOException {
+        ByteBuffer buffer = trace.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        BinaryTraceReader reader = fromHeader(buffer);
+        long decoded = reader.decode(buffer, buffer.limit(), reader.recordCount, sink);
+        if (decoded < reader.recordCount) throw truncated("in memory", reader.recordCount - decoded);
+    }
+
+    //a decoder for a trace that arrives as a stream; consumes the header from a little-endian buffer
+    static BinaryTraceReader fromHeader(ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < BinaryTraceFormat.HEADER_SIZE || buffer.getInt() != BinaryTraceFormat.MAGIC) {
+            throw new IOException("Not a binary trace");
+        }
+        byte version = buffer.get();
+        if (version != BinaryTraceFormat.VERSION) throw new IOException("Unsupported trace version " + version);
+        int width = buffer.get();
+        byte encoding = buffer.get();
+        buffer.get();
+        long count = buffer.getLong();
+        return new BinaryTraceReader(null, MappedTraceReader.DEFAULT_CHUNK_SIZE, width, encoding, count);
+    }
+
+    /**
+     * Decodes records while the buffer position is below limit, up to maxRecords, stopping early
+     * at a record that does not fit before the buffer's own limit.
+     * Returns the number of records decoded.
+     */
+    long decode(ByteBuffer buffer, int limit, long maxRecords, TraceSink sink) {
+        long count = 0;
+        if (encoding == BinaryTraceFormat.ENCODING_FIXED) {
+            boolean wide = addressWidth == 8;
+            while (count < maxRecords && buffer.position() < limit && fits(buffer)) {
+                int op = buffer.get();
+                long address = wide ? buffer.getLong() : buffer.getInt() & 0xFFFFFFFFL;
+                sink.accept(address, op);
+                count++;
+            }
+        } else {
+            long mask = addressWidth == 8 ? -1L : 0xFFFFFFFFL;
+            long last = previous;
+            while (count < maxRecords && buffer.position() < limit && fits(buffer)) {
+                long value = readVarint(buffer);
+                int op = (int) (value & 3);
+                long address;
+                if (op == BinaryTraceFormat.ESCAPE) {
+                    address = buffer.getLong();
+                    op = buffer.get();
+                } else {
+                    long zigzag = value >>> 2;
+                    address = (last + ((zigzag >>> 1) ^ -(zigzag & 1))) & mask;
+                }
+                last = address;
+                sink.accept(address, op);
+                count++;
+            }
+            previous = last;
+        }
+        return count;
+    }
+
+    //whether a whole record starts at the buffer's position; only checked near the end of the data
+    private boolean fits(ByteBuffer buffer) {
+        int pos = buffer.position();
+        int available = buffer.limit() - pos;
+        if (available >= 2 * SAFE_RECORD_SIZE) return true;
+        if (encoding == BinaryTraceFormat.ENCODING_FIXED) return available >= 1 + addressWidth;
+        for (int i = 0; i < available && i < MAX_VARINT_SIZE; i++) {
+            if (buffer.get(pos + i) >= 0) {
+                // an escape is followed by the absolute address and the op
+                boolean escape = (buffer.get(pos) & 3) == BinaryTraceFormat.ESCAPE;
+                return available >= i + 1 + (escape ? Long.BYTES + 1 : 0);
+            }
+        }
+        return false;
+    }
+
+    private static long readVarint(ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        return value;
+    }
+}
@@ -0,0 +1,115 @@
+package trace;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes a binary trace through a reusable direct buffer; the record count in the header is
+ * patched in on close(). An address wider than the declared width is rejected, never truncated.
+ */
+public class BinaryTraceWriter implements TraceSink, Closeable {
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final int addressWidth;
+    private final byte encoding;
+    private final long addressMask;
+    private long previous = 0;
+    private long recordCount = 0;
+
+    public BinaryTraceWriter(Path path, int addressWidth, byte encoding) throws IOException {
+        if (addressWidth != 4 && addressWidth != 8) {
+            throw new IllegalArgumentException("Address width must be 4 or 8 bytes");
+        }
+        if (encoding != BinaryTraceFormat.ENCODING_FIXED && encoding != BinaryTraceFormat.ENCODING_DELTA) {
+            throw new IllegalArgumentException("Unknown encoding " + encoding);
+        }
+        this.addressWidth = addressWidth;
+        this.encoding = encoding;
+        this.addressMask = addressWidth == 8 ? -1L : 0xFFFFFFFFL;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        putHeader(buffer);
+    }
+
+    @Override
+    public void accept(long address, int op) {
+        try {
+            write(address, op);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void write(long address, int op) throws IOException {
+        if (buffer.remaining() < BinaryTraceFormat.MAX_RECORD_SIZE) flush();
+        if ((address & ~addressMask) != 0) {
+            throw new IllegalArgumentException("Address 0x" + Long.toHexString(address) + " does not fit in "
+                    + addressWidth + " bytes; use an address width of 8");
+        }
+        if (encoding == BinaryTraceFormat.ENCODING_FIXED) {
+            buffer.put((byte) op);
+            if (addressWidth == 8) buffer.putLong(address);
+            else buffer.putInt((int) address);
+        } else {
+            long delta = address - previous;
+            long zigzag = (delta << 1) ^ (delta >> 63);
+            if (zigzag >>> 62 != 0) {
+                putVarint(BinaryTraceFormat.ESCAPE);
+                buffer.putLong(address);
+                buffer.put((byte) op);
+            } else {
+                putVarint(zigzag << 2 | op);
+            }
+            previous = address;
+        }
+        recordCount++;
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            ByteBuffer header = ByteBuffer.allocate(BinaryTraceFormat.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            putHeader(header);
+            header.flip();
+            channel.write(header, 0);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void putHeader(ByteBuffer target) {
+        target.putInt(BinaryTraceFormat.MAGIC);
+        target.put(BinaryTraceFormat.VERSION);
+        target.put((byte) addressWidth);
+        target.put(encoding);
+        target.put((byte) 0);
+        target.putLong(recordCount);
+    }
+
+    private void putVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) channel.write(buffer);
+        buffer.clear();
+    }
+}
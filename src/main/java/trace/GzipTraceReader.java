@@ -0,0 +1,184 @@
+package trace;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Streams a gzip-compressed trace, text or binary, without inflating it to disk first. A decoder
+ * thread inflates and parses the file into a fixed ring of primitive batches; read() drains them
+ * on the calling thread, so decompression overlaps simulation and the consuming side allocates
+ * nothing. The ring has exactly one producer and one consumer, so two volatile counters are all
+ * the synchronisation it needs.
+ */
+public class GzipTraceReader {
+    static final int BATCH_SIZE = 4096;
+    static final int RING_SIZE = 8; // a power of two
+    private static final int INPUT_SIZE = 1 << 16;
+    private static final int SPINS = 1000; // busy-wait this long before parking
+
+    private final Path path;
+    private final Batch[] ring = new Batch[RING_SIZE];
+    private volatile long published; // batches handed over by the decoder
+    private volatile long consumed;  // batches drained by read()
+    private volatile boolean done;
+    private volatile boolean cancelled;
+    private volatile Exception failure;
+    private Batch filling;           // decoder thread only
+    private long invalidCount;
+
+    private static class Batch {
+        final long[] addresses = new long[BATCH_SIZE];
+        final byte[] ops = new byte[BATCH_SIZE];
+        int size;
+    }
+
+    public GzipTraceReader(Path path) {
+        this.path = path;
+        for (int i = 0; i < RING_SIZE; i++) ring[i] = new Batch();
+    }
+
+    public static boolean isGzip(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(2);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) ;
+            return magic.position() == 2 && (magic.get(0) & 0xFF) == 0x1F && (magic.get(1) & 0xFF) == 0x8B;
+        }
+    }
+
+    public void read(TraceSink sink) throws IOException {
+        published = 0;
+        consumed = 0;
+        done = false;
+        cancelled = false;
+        failure = null;
+        filling = ring[0];
+        filling.size = 0;
+        Thread decoder = new Thread(this::decode, "gzip-trace-decoder");
+        decoder.setDaemon(true);
+        decoder.start();
+        boolean finished = false;
+        try {
+            long next = 0;
+            int idle = 0;
+            while (true) {
+                if (next < published) {
+                    Batch batch = ring[(int) next & (RING_SIZE - 1)];
+                    long[] addresses = batch.addresses;
+                    byte[] ops = batch.ops;
+                    for (int i = 0, n = batch.size; i < n; i++) sink.accept(addresses[i], ops[i]);
+                    consumed = ++next;
+                    idle = 0;
+                } else if (done) {
+                    // done is set after the last batch is published, so one more look settles it
+                    if (next == published) break;
+                } else {
+                    pause(idle++);
+                }
+            }
+            finished = true;
+        } finally {
+            // lets the decoder give up if the sink threw
+            if (!finished) cancelled = true;
+        }
+        Exception e = failure;
+        if (e instanceof IOException) throw new IOException("Reading " + path + ": " + e.getMessage(), e);
+        if (e != null) throw new IOException("Reading " + path, e);
+    }
+
+    //tokens of a text trace that were neither decimal nor 0x-prefixed hex
+    public long getInvalidCount() {
+        return invalidCount;
+    }
+
+    private void decode() {
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(path), INPUT_SIZE)) {
+            byte[] bytes = new byte[INPUT_SIZE];
+            ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            int filled = fill(in, bytes, 0);
+            TraceSink sink = this::put;
+            if (filled >= 4 && buffer.getInt(0) == BinaryTraceFormat.MAGIC) {
+                decodeBinary(in, bytes, buffer, filled, sink);
+            } else {
+                TextTraceParser parser = new TextTraceParser();
+                while (filled > 0) {
+                    buffer.limit(filled).position(0);
+                    parser.feed(buffer, sink);
+                    filled = fill(in, bytes, 0);
+                }
+                parser.finish(sink);
+                invalidCount = parser.getInvalidCount();
+            }
+            if (filling.size > 0) publish();
+        } catch (CancellationException e) {
+            // the reader stopped early
+        } catch (IOException | RuntimeException e) {
+            failure = e;
+        } finally {
+            done = true;
+        }
+    }
+
+    private void decodeBinary(InputStream in, byte[] bytes, ByteBuffer buffer, int filled, TraceSink sink) throws IOException {
+        if (filled < BinaryTraceFormat.HEADER_SIZE) throw new IOException("Truncated binary trace header");
+        BinaryTraceReader reader = BinaryTraceReader.fromHeader(buffer);
+        long remaining = reader.getRecordCount();
+        boolean eof = filled < bytes.length;
+        while (remaining > 0) {
+            // a record never starts within MAX_RECORD_SIZE of the end unless the stream has ended there
+            int limit = eof ? filled : filled - BinaryTraceFormat.MAX_RECORD_SIZE;
+            buffer.limit(filled);
+            long decoded = reader.decode(buffer, limit, remaining, sink);
+            remaining -= decoded;
+            if (eof) {
+                if (remaining > 0) throw new IOException("Truncated or corrupt binary trace: " + remaining + " records missing");
+                break;
+            }
+            int left = filled - buffer.position();
+            System.arraycopy(bytes, buffer.position(), bytes, 0, left);
+            buffer.position(0);
+            filled = fill(in, bytes, left);
+            eof = filled < bytes.length;
+        }
+    }
+
+    //reads until the array is full or the stream ends; returns the number of bytes held
+    private static int fill(InputStream in, byte[] bytes, int from) throws IOException {
+        int n;
+        while (from < bytes.length && (n = in.read(bytes, from, bytes.length - from)) >= 0) from += n;
+        return from;
+    }
+
+    private void put(long address, int op) {
+        Batch batch = filling;
+        batch.addresses[batch.size] = address;
+        batch.ops[batch.size] = (byte) op;
+        if (++batch.size == BATCH_SIZE) publish();
+    }
+
+    private void publish() {
+        long next = published + 1;
+        published = next;
+        // the next slot is free once the reader has drained the batch it held one lap ago
+        int idle = 0;
+        while (next - consumed >= RING_SIZE) {
+            if (cancelled) throw new CancellationException();
+            pause(idle++);
+        }
+        filling = ring[(int) next & (RING_SIZE - 1)];
+        filling.size = 0;
+    }
+
+    private static void pause(int idle) {
+        if (idle < SPINS) Thread.onSpinWait();
+        else LockSupport.parkNanos(20_000);
+    }
+}
@@ -0,0 +1,48 @@
+package trace;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams a text trace straight from a memory-mapped file. The file is mapped one
+ * window at a time, so traces larger than 2 GB work and only the current window is
+ * resident; no line or token is ever materialised as a String.
+ */
+public class MappedTraceReader {
+    public static final long DEFAULT_CHUNK_SIZE = 64L << 20;
+
+    private final Path path;
+    private final long chunkSize;
+    private final TextTraceParser parser = new TextTraceParser();
+
+    public MappedTraceReader(Path path) {
+        this(path, DEFAULT_CHUNK_SIZE);
+    }
+
+    public MappedTraceReader(Path path, long chunkSize) {
+        if (chunkSize <= 0 || chunkSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Chunk size must be between 1 and " + Integer.MAX_VALUE);
+        }
+        this.path = path;
+        this.chunkSize = chunkSize;
+    }
+
+    public void read(TraceSink sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long pos = 0; pos < size; pos += chunkSize) {
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(chunkSize, size - pos));
+                parser.feed(chunk, sink);
+            }
+            parser.finish(sink);
+        }
+    }
+
+    //tokens that were neither decimal nor 0x-prefixed hex
+    public long getInvalidCount() {
+        return parser.getInvalidCount();
+    }
+}
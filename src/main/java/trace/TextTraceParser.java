@@ -0,0 +1,93 @@
+package trace;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental parser for the text trace format used by the UI: whitespace separated
+ * addresses, either decimal ("42") or hex with a "0x" prefix ("0x2A"), up to 64 bits unsigned.
+ * An address may be preceded by an operation token, R (load), W (store) or I (instruction
+ * fetch), as in "W 0x2A"; a bare address is a load.
+ * Parser state survives between feed() calls, so a token may be split across buffers.
+ */
+public class TextTraceParser {
+    private static final long MAX_DECIMAL_PREFIX = Long.divideUnsigned(-1L, 10);
+
+    private long value = 0;
+    private int length = 0;      // bytes in the current token
+    private boolean hex = false;
+    private boolean invalid = false;
+    private byte first;          // first byte of the current token
+    private int op = BinaryTraceFormat.OP_READ; // operation for the next address
+    private long invalidCount = 0;
+
+    public void feed(ByteBuffer buffer, TraceSink sink) {
+        while (buffer.hasRemaining()) {
+            byte b = buffer.get();
+            if (b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f') {
+                endToken(sink);
+            } else {
+                consume(b);
+            }
+        }
+    }
+
+    //flushes a trailing token that was not followed by whitespace
+    public void finish(TraceSink sink) {
+        endToken(sink);
+    }
+
+    public long getInvalidCount() {
+        return invalidCount;
+    }
+
+    public static int opOf(byte b) {
+        switch (b) {
+            case 'R': case 'r': return BinaryTraceFormat.OP_READ;
+            case 'W': case 'w': return BinaryTraceFormat.OP_WRITE;
+            case 'I': case 'i': return BinaryTraceFormat.OP_FETCH;
+            default: return -1;
+        }
+    }
+
+    private void consume(byte b) {
+        int pos = length++;
+        if (pos == 0) first = b;
+        if (invalid) return;
+        if (pos == 1 && b == 'x' && value == 0 && !hex) {
+            hex = true;
+            return;
+        }
+        int digit = Character.digit(b, hex ? 16 : 10);
+        if (digit < 0) {
+            invalid = true;
+            return;
+        }
+        // addresses are unsigned 64-bit; anything wider is rejected
+        if (hex) {
+            if (value >>> 60 != 0) invalid = true;
+            value = value << 4 | digit;
+        } else {
+            long next = value * 10 + digit;
+            if (Long.compareUnsigned(value, MAX_DECIMAL_PREFIX) > 0 || Long.compareUnsigned(next, value * 10) < 0) invalid = true;
+            value = next;
+        }
+    }
+
+    private void endToken(TraceSink sink) {
+        if (length == 0) return;
+        int tokenOp = length == 1 ? opOf(first) : -1;
+        if (tokenOp >= 0) {
+            op = tokenOp;
+        } else if (invalid || (hex && length == 2)) {
+            invalidCount++;
+            op = BinaryTraceFormat.OP_READ;
+        } else {
+            sink.accept(value, op);
+            op = BinaryTraceFormat.OP_READ;
+        }
+        value = 0;
+        length = 0;
+        hex = false;
+        invalid = false;
+    }
+}
@@ -0,0 +1,77 @@
+package trace;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * A whole trace decoded once into primitive arrays. Once loaded it is only read, so any
+ * number of simulations can replay it concurrently without decoding the file again.
+ */
+public class TraceBuffer implements TraceSink {
+    private long[] addresses = new long[1 << 16];
+    private byte[] ops = new byte[1 << 16];
+    private int size = 0;
+    private long invalidCount = 0;
+
+    public static TraceBuffer load(Path path) throws IOException {
+        TraceBuffer buffer = new TraceBuffer();
+        if (GzipTraceReader.isGzip(path)) {
+            GzipTraceReader reader = new GzipTraceReader(path);
+            reader.read(buffer);
+            buffer.invalidCount = reader.getInvalidCount();
+        } else if (BinaryTraceReader.isBinaryTrace(path)) {
+            BinaryTraceReader reader = new BinaryTraceReader(path);
+            if (reader.getRecordCount() > Integer.MAX_VALUE - 8) throw new IOException("Trace too large to buffer: " + path);
+            buffer.ensureCapacity((int) reader.getRecordCount());
+            reader.read(buffer);
+        } else {
+            MappedTraceReader reader = new MappedTraceReader(path);
+            reader.read(buffer);
+            buffer.invalidCount = reader.getInvalidCount();
+        }
+        return buffer;
+    }
+
+    @Override
+    public void accept(long address, int op) {
+        if (size == addresses.length) {
+            if (size >= Integer.MAX_VALUE - 8) throw new IllegalStateException("Trace too large to buffer");
+            ensureCapacity((int) Math.min(Integer.MAX_VALUE - 8, size * 2L));
+        }
+        addresses[size] = address;
+        ops[size] = (byte) op;
+        size++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= addresses.length) return;
+        addresses = Arrays.copyOf(addresses, capacity);
+        ops = Arrays.copyOf(ops, capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long address(int i) {
+        return addresses[i];
+    }
+
+    public int op(int i) {
+        return ops[i];
+    }
+
+    //backing array, valid up to size(); callers must not modify it
+    public long[] addresses() {
+        return addresses;
+    }
+
+    public long getInvalidCount() {
+        return invalidCount;
+    }
+
+    public void replay(TraceSink sink) {
+        for (int i = 0; i < size; i++) sink.accept(addresses[i], ops[i]);
+    }
+}
@@ -0,0 +1,61 @@
+package trace;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+//converts a hex/decimal text trace into the binary trace format
+public class TraceConverter {
+    private static final String USAGE =
+            "Usage: TraceConverter [--encoding delta|fixed] [--width 4|8] <text-trace> <binary-trace>\n" +
+            "  --width is the address width in bytes (default: 8); with 4, a wider address is an error";
+
+    public static long convert(Path textTrace, Path binaryTrace, int addressWidth, byte encoding) throws IOException {
+        MappedTraceReader reader = new MappedTraceReader(textTrace);
+        try (BinaryTraceWriter writer = new BinaryTraceWriter(binaryTrace, addressWidth, encoding)) {
+            reader.read(writer);
+            if (reader.getInvalidCount() > 0) {
+                System.err.println("Skipped " + reader.getInvalidCount() + " invalid tokens");
+            }
+            return writer.getRecordCount();
+        }
+    }
+
+    public static void main(String[] args) {
+        byte encoding = BinaryTraceFormat.ENCODING_DELTA;
+        int width = 8;
+        Path in = null;
+        Path out = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--encoding") && i + 1 < args.length) {
+                String value = args[++i];
+                if (value.equals("fixed")) encoding = BinaryTraceFormat.ENCODING_FIXED;
+                else if (value.equals("delta")) encoding = BinaryTraceFormat.ENCODING_DELTA;
+                else usage("Unknown encoding " + value + ", expected delta or fixed");
+            } else if (args[i].equals("--width") && i + 1 < args.length) {
+                String value = args[++i];
+                if (value.equals("4")) width = 4;
+                else if (value.equals("8")) width = 8;
+                else usage("Invalid width " + value + ", expected 4 or 8");
+            } else if (in == null) {
+                in = Path.of(args[i]);
+            } else {
+                out = Path.of(args[i]);
+            }
+        }
+        if (in == null || out == null) usage(null);
+        try {
+            long records = convert(in, out, width, encoding);
+            System.out.printf("Wrote %d records: %d bytes -> %d bytes%n", records, Files.size(in), Files.size(out));
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void usage(String error) {
+        if (error != null) System.err.println("Error: " + error);
+        System.err.println(USAGE);
+        System.exit(2);
+    }
+}
@@ -0,0 +1,6 @@
+package trace;
+
+//receives decoded accesses from a trace reader, one call per access
+public interface TraceSink {
+    void accept(long address, int op);
+}
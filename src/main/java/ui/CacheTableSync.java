@@ -0,0 +1,90 @@
+package ui;
+
+import Cache.CacheBlock;
+import Cache.SetChangeListener;
+import Cache.SetMapped;
+import javafx.application.Platform;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.scene.control.TableView;
+
+import java.util.BitSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Keeps a cache table in step with a cache that is being simulated on another thread.
+ * The table has one fixed row per (set, way) slot. The cache reports changed sets to a dirty
+ * bitmap on the simulation thread; flush() turns just those sets into rows and hands them to
+ * the FX thread, and never has more than one batch waiting there.
+ */
+class CacheTableSync implements SetChangeListener {
+    private final SetMapped cache;
+    private final int ways;
+    private final ObservableList<MainUI.CacheRow> rows = FXCollections.observableArrayList();
+    private final BitSet dirty = new BitSet(); // simulation thread only
+    private final AtomicBoolean batchPending = new AtomicBoolean(false);
+
+    //must be called on the FX thread before the simulation starts
+    CacheTableSync(SetMapped cache, TableView<MainUI.CacheRow> table) {
+        this.cache = cache;
+        this.ways = cache.getWays();
+        for (int set = 0; set < cache.getSetCount(); set++) {
+            for (int way = 0; way < ways; way++) rows.add(toRow(set, cache.getBlock(set, way)));
+        }
+        table.setItems(rows);
+        cache.setChangeListener(this);
+    }
+
+    @Override
+    public void setChanged(int set) {
+        dirty.set(set);
+    }
+
+    //simulation thread: publishes the dirty sets unless the FX thread is still behind
+    void flush() {
+        if (dirty.isEmpty() || batchPending.get()) return;
+        int[] slots = new int[dirty.cardinality() * ways];
+        MainUI.CacheRow[] changed = new MainUI.CacheRow[slots.length];
+        collect(slots, changed);
+        batchPending.set(true);
+        Platform.runLater(() -> {
+            apply(slots, changed);
+            batchPending.set(false);
+        });
+    }
+
+    //FX thread, once the simulation has finished: applies whatever is still dirty
+    void finish() {
+        cache.setChangeListener(null);
+        if (dirty.isEmpty()) return;
+        int[] slots = new int[dirty.cardinality() * ways];
+        MainUI.CacheRow[] changed = new MainUI.CacheRow[slots.length];
+        collect(slots, changed);
+        apply(slots, changed);
+    }
+
+    void detach() {
+        cache.setChangeListener(null);
+    }
+
+    private void collect(int[] slots, MainUI.CacheRow[] changed) {
+        int n = 0;
+        for (int set = dirty.nextSetBit(0); set >= 0; set = dirty.nextSetBit(set + 1)) {
+            for (int way = 0; way < ways; way++) {
+                slots[n] = set * ways + way;
+                changed[n] = toRow(set, cache.getBlock(set, way));
+                n++;
+            }
+        }
+        dirty.clear();
+    }
+
+    private void apply(int[] slots, MainUI.CacheRow[] changed) {
+        for (int i = 0; i < slots.length; i++) rows.set(slots[i], changed[i]);
+    }
+
+    private static MainUI.CacheRow toRow(int set, CacheBlock block) {
+        return block == null ? new MainUI.CacheRow(set, -1, false, false)
+                : new MainUI.CacheRow(set, block.getTag(), block.isValid(), block.isDirty());
+    }
+}
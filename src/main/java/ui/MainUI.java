@@ -6,20 +6,40 @@ import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.geometry.Insets;
 import javafx.scene.Scene;
+import javafx.scene.chart.BarChart;
+import javafx.scene.chart.CategoryAxis;
+import javafx.scene.chart.NumberAxis;
 import javafx.scene.chart.PieChart;
+import javafx.scene.chart.XYChart;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.scene.layout.HBox;
 import javafx.scene.layout.VBox;
 import javafx.stage.FileChooser;
 import javafx.stage.Stage;
+import sim.AccessLogWriter;
+import trace.GzipTraceReader;
+import trace.TextTraceParser;
+import trace.TraceBuffer;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
 
 
 
 public class MainUI extends Application {
+    private static final int LOG_VIEW_CAPACITY = 1000; // most recent log entries kept on screen
+    private static final String ADDRESS_PROMPT = "e.g.\n4\n8\n4\n0x10";
+    private static final String[] POLICIES = {"lru", "plru", "bitplru", "fifo", "random", "lfu", "srrip", "brrip", "opt"};
+
     private ComboBox<String> cacheTypeSelector;
+    private ComboBox<String> writePolicySelector;
+    private ComboBox<String> replacementPolicySelector;
 
     private int lastAccessedIndex = -1;
     private boolean lastAccessWasHit = false;
@@ -27,18 +47,39 @@ public class MainUI extends Application {
     private Label hitsLabel;
     private Label missesLabel;
     private Label ratioLabel;
+    private Label trafficLabel;
 
     private CacheInterface cache;
     private TextArea addressInput;
     private TextArea outputArea;
     private TableView<CacheRow> table;
     private PieChart pieChart;
+    private CheckBox setStatsToggle;
+    private ComboBox<String> heatMetricSelector;
+    private SetHeatMap heatMap;
+    private BarChart<String, Number> reuseChart;
     private TextField blockCountField;
     private TextField wayCountField;
-    private TableView<CacheRow> l1Table;
-    private TableView<CacheRow> l2Table;
-    private TableView<CacheRow> l3Table;
-    private Label l1InfoLabel, l2InfoLabel, l3InfoLabel;
+    private VBox levelsBox;
+    private List<TableView<CacheRow>> levelTables = new ArrayList<>();
+    private List<Label> levelInfoLabels = new ArrayList<>();
+    private HierarchyConfig hierarchyConfig = HierarchyConfig.defaults(1, InclusionPolicy.NINE);
+    private Label amatLabel;
+    private Label missClassLabel;
+    private MissClassifier classifier; // 3C counts of the current single-level cache, null for a hierarchy
+    private Button simulateBtn;
+    private Button cancelBtn;
+    private ProgressBar progressBar;
+    private Label progressLabel;
+    private SimulationTask currentTask;
+    private List<CacheTableSync> tableSyncs = new ArrayList<>();
+    private long optAccesses = -1; // addresses in the OPT index of the cache being built, -1 without OPT
+    private Path traceFile;         // a compressed trace to stream instead of the text area, or null
+    private TraceBuffer optTrace;   // traceFile read up front for OPT
+    private ListView<String> logView;
+    private ComboBox<String> logModeSelector;
+    private TextField sampleField;
+    private Path logFile;
 
 
 
@@ -46,18 +87,21 @@ public class MainUI extends Application {
 
     public static class CacheRow {
         private final int index;
-        private final int tag;
+        private final long tag;
         private final boolean valid;
+        private final boolean dirty;
 
-        public CacheRow(int index, int tag, boolean valid) {
+        public CacheRow(int index, long tag, boolean valid, boolean dirty) {
             this.index = index;
             this.tag = tag;
             this.valid = valid;
+            this.dirty = dirty;
         }
 
         public int getIndex() { return index; }
-        public int getTag() { return tag; }
+        public long getTag() { return tag; }
         public boolean isValid() { return valid; }
+        public boolean isDirty() { return dirty; }
     }
 
 
@@ -70,7 +114,11 @@ public class MainUI extends Application {
 
         Label label = new Label("Enter Memory Addresses (one per line):");
         addressInput = new TextArea();
-        addressInput.setPromptText("e.g.\n4\n8\n4\n0x10");
+        addressInput.setPromptText(ADDRESS_PROMPT);
+        // typing replaces a loaded compressed trace
+        addressInput.textProperty().addListener((obs, old, text) -> {
+            if (!text.isEmpty()) forgetTraceFile();
+        });
 
         blockCountField = new TextField("8");
         blockCountField.setPromptText("Total Blocks");
@@ -88,20 +136,52 @@ public class MainUI extends Application {
         );
         cacheTypeSelector.getSelectionModel().selectFirst();
 
-        Button simulateBtn = new Button("Simulate");
+        // hierarchy files set the write policy per level
+        writePolicySelector = new ComboBox<>();
+        writePolicySelector.getItems().addAll("Write-back, write-allocate", "Write-through, no-write-allocate");
+        writePolicySelector.getSelectionModel().selectFirst();
+
+        // same order as POLICIES; hierarchy levels and direct-mapped caches ignore it
+        replacementPolicySelector = new ComboBox<>();
+        replacementPolicySelector.getItems().addAll("LRU", "Tree-PLRU", "Bit-PLRU", "FIFO", "Random", "LFU",
+                "SRRIP", "BRRIP", "OPT (Belady)");
+        replacementPolicySelector.getSelectionModel().selectFirst();
+
+        simulateBtn = new Button("Simulate");
+        cancelBtn = new Button("Cancel");
+        cancelBtn.setDisable(true);
         Button resetBtn = new Button("Reset");
         Button browseBtn = new Button("Browse File");
         Button saveBtn = new Button("Save Output");
+        Button hierarchyBtn = new Button("Load Hierarchy");
 
         simulateBtn.setOnAction(e -> simulateAccesses());
+        cancelBtn.setOnAction(e -> cancelSimulation());
         resetBtn.setOnAction(e -> reset());
         browseBtn.setOnAction(e -> loadFile());
         saveBtn.setOnAction(e -> saveOutputToFile());
+        hierarchyBtn.setOnAction(e -> loadHierarchy());
+
+        progressBar = new ProgressBar(0);
+        progressBar.setMaxWidth(Double.MAX_VALUE);
+        progressLabel = new Label();
 
         outputArea = new TextArea();
         outputArea.setEditable(false);
+        outputArea.setPrefRowCount(3);
         outputArea.setPromptText("Simulation output...");
 
+        logView = new ListView<>();
+        logView.setPrefHeight(240);
+
+        logModeSelector = new ComboBox<>();
+        logModeSelector.getItems().addAll("Log all accesses", "Log misses only", "Log 1 in N accesses");
+        logModeSelector.getSelectionModel().selectFirst();
+        sampleField = new TextField("100");
+        sampleField.setPromptText("N");
+        sampleField.setPrefColumnCount(6);
+        HBox logOptions = new HBox(8, logModeSelector, sampleField);
+
         pieChart = new PieChart();
         pieChart.setTitle("Cache Hit vs Miss");
         pieChart.setLegendVisible(true);
@@ -112,6 +192,9 @@ public class MainUI extends Application {
         hitsLabel = new Label("Hits: 0");
         missesLabel = new Label("Misses: 0");
         ratioLabel = new Label("Hit Ratio: 0.00%");
+        amatLabel = new Label();
+        missClassLabel = new Label();
+        trafficLabel = new Label("Read: 0 B, Written: 0 B");
 
 
         hitsLabel.setStyle("-fx-font-size: 16px; -fx-font-weight: bold;");
@@ -120,20 +203,24 @@ public class MainUI extends Application {
 
         Label modeLabel = new Label("Select Cache Type:");
 
-        l1InfoLabel = new Label("L1 Blocks: ");
-        l2InfoLabel = new Label("L2 Blocks: ");
-        l3InfoLabel = new Label("L3 Blocks: ");
+        levelsBox = new VBox(12);
 
-        l1Table = createCacheTable();
-        l2Table = createCacheTable();
-        l3Table = createCacheTable();
+        // per-set stats of the cache, or of L1 in a hierarchy
+        setStatsToggle = new CheckBox("Collect per-set stats");
+        heatMetricSelector = new ComboBox<>();
+        heatMetricSelector.getItems().addAll("Accesses per set", "Misses per set", "Evictions per set");
+        heatMetricSelector.getSelectionModel().select(1);
+        heatMetricSelector.setOnAction(e -> updateSetStats());
+        heatMap = new SetHeatMap(860, 160);
+        reuseChart = new BarChart<>(new CategoryAxis(), new NumberAxis());
+        reuseChart.setTitle("Reuse distance (accesses in between, log2 buckets)");
+        reuseChart.setLegendVisible(false);
+        reuseChart.setAnimated(false);
+        reuseChart.setPrefHeight(220);
+        VBox setStatsBox = new VBox(8, new HBox(8, setStatsToggle, heatMetricSelector), heatMap, reuseChart);
 
-        Label l1Label = new Label("L1 Cache");
-        Label l2Label = new Label("L2 Cache");
-        Label l3Label = new Label("L3 Cache");
 
-
-        VBox statsVBox = new VBox(10, hitsLabel, missesLabel, ratioLabel);
+        VBox statsVBox = new VBox(10, hitsLabel, missesLabel, missClassLabel, ratioLabel, trafficLabel, amatLabel);
         HBox statsBox = new HBox(32, pieChart, statsVBox);
         statsBox.setPadding(new Insets(12));
 
@@ -141,13 +228,14 @@ public class MainUI extends Application {
         root.getChildren().addAll(
                 label, addressInput,
                 blockCountField, wayCountField,
-                cacheTypeSelector, modeLabel,
-                simulateBtn, resetBtn, browseBtn, saveBtn,
+                cacheTypeSelector, modeLabel, writePolicySelector, replacementPolicySelector,
+                simulateBtn, cancelBtn, resetBtn, browseBtn, saveBtn, hierarchyBtn,
+                progressBar, progressLabel,
                 statsBox,
                 outputArea,
-                l1InfoLabel, l1Label, l1Table,
-                l2InfoLabel, l2Label, l2Table,
-                l3InfoLabel, l3Label, l3Table
+                logOptions, logView,
+                setStatsBox,
+                levelsBox
         );
 
         ScrollPane scrollPane = new ScrollPane(root);
@@ -166,24 +254,33 @@ public class MainUI extends Application {
 
 
     private void simulateAccesses() {
+        if (currentTask != null && currentTask.isRunning()) return;
         String selected = cacheTypeSelector.getValue();
+        optAccesses = -1;
+        optTrace = null;
+        if (traceFile != null && POLICIES[replacementPolicySelector.getSelectionModel().getSelectedIndex()].equals("opt")) {
+            // OPT cannot build its cache without the whole trace
+            try {
+                optTrace = TraceBuffer.load(traceFile);
+            } catch (IOException e) {
+                outputArea.setText("Error reading file: " + e.getMessage());
+                return;
+            }
+        }
 
 
         switch (selected) {
             case "Direct-Mapped (8 blocks)":
-                cache = new DirectMappedCache(8);
+                cache = new DirectMappedCache(CacheGeometry.ofBlocks(8, 1), getWritePolicy());
                 break;
             case "2-Way Set-Associative (8 blocks)":
-                cache = new SetAssociativeCache(8, 2);
+                cache = setAssociative(CacheGeometry.ofBlocks(8, 2));
                 break;
             case "4-Way Set-Associative (8 blocks)":
-                cache = new SetAssociativeCache(8, 4);
+                cache = setAssociative(CacheGeometry.ofBlocks(8, 4));
                 break;
             case "Multi-Level Cache":
-                CacheInterface l1 = new DirectMappedCache(4);
-                CacheInterface l2 = new SetAssociativeCache(8, 2);
-                CacheInterface l3 = new SetAssociativeCache(16, 4);
-                cache = new MultiLevelCache(l1, l2, l3);
+                cache = hierarchyConfig.build();
                 break;
             case "Custom Configuration": 
                 try {
@@ -196,9 +293,9 @@ public class MainUI extends Application {
                     }
 
                     if (ways == 1) {
-                        cache = new DirectMappedCache(totalBlocks);
+                        cache = new DirectMappedCache(CacheGeometry.ofBlocks(totalBlocks, 1), getWritePolicy());
                     } else {
-                        cache = new SetAssociativeCache(totalBlocks, ways);
+                        cache = setAssociative(CacheGeometry.ofBlocks(totalBlocks, ways));
                     }
                 } catch (NumberFormatException e) {
                     outputArea.setText("Error: Please enter valid numbers for Total Blocks and Ways.");
@@ -206,93 +303,285 @@ public class MainUI extends Application {
                 }
                 break;
         }
+        optTrace = null;
         outputArea.clear();
+        showLevels();
+
+        SimulationLog log;
+        try {
+            log = openLog();
+        } catch (IOException | NumberFormatException e) {
+            outputArea.setText("Error: Could not start the simulation log: " + e.getMessage());
+            return;
+        }
 
-        String[] lines = addressInput.getText().split("\\s+|\\n");
-        StringBuilder log = new StringBuilder();
+        SetMapped statsSource = setStatsSource();
+        if (statsSource != null) statsSource.setSetStatsEnabled(setStatsToggle.isSelected());
+        classifier = cache instanceof MultiLevelCache ? null : new MissClassifier(cache);
+        CacheInterface simulated = classifier != null ? classifier : cache;
+        SimulationTask task = traceFile != null ? new SimulationTask(simulated, traceFile, attachTables(), log)
+                : new SimulationTask(simulated, addressInput.getText(), attachTables(), log);
+        if (optAccesses >= 0) task.expectAccesses(optAccesses);
+        currentTask = task;
+        progressBar.progressProperty().bind(task.progressProperty());
+        progressLabel.textProperty().bind(task.messageProperty());
+        simulateBtn.setDisable(true);
+        cancelBtn.setDisable(false);
+
+        task.setOnSucceeded(e -> {
+            finishSimulation(task);
+            lastAccessedIndex = task.getLastAccessedIndex();
+            lastAccessWasHit = task.wasLastAccessHit();
+            log.finish();
+            outputArea.setText(String.format("Logged %,d entries to %s", task.getValue(), logFile));
+            refreshTables();
+            updateStats();
+            updatePieChart();
+        });
+        task.setOnCancelled(e -> {
+            finishSimulation(task);
+            task.detachTables();
+            outputArea.setText("Simulation cancelled.");
+        });
+        task.setOnFailed(e -> {
+            finishSimulation(task);
+            task.detachTables();
+            outputArea.setText("Simulation failed: " + task.getException());
+        });
+
+        Thread worker = new Thread(task, "cache-simulation");
+        worker.setDaemon(true);
+        worker.start();
+    }
 
-        for (String line : lines) {
-            if (line.trim().isEmpty()) continue;
-            try {
-                int address = line.startsWith("0x") ? Integer.parseInt(line.substring(2), 16) : Integer.parseInt(line);
-                boolean hit = cache.access(address);
-                int index = cache.getLastAccessedIndex();
-                lastAccessedIndex = index;
-                lastAccessWasHit = hit;
-
-                String result = hit ? "HIT" : "MISS";
-                if (cache instanceof MultiLevelCache) {
-                    result = ((MultiLevelCache) cache).getLastHitLevel();
-                }
+    private WritePolicy getWritePolicy() {
+        return writePolicySelector.getSelectionModel().getSelectedIndex() == 1 ? WritePolicy.WRITE_THROUGH : WritePolicy.WRITE_BACK;
+    }
 
-                log.append("Address ").append(line).append(" => ").append(result).append("\n");
+    //LRU keeps the deque-based cache, or the hashed one for large single sets; every other policy runs on the flat engine
+    private CacheInterface setAssociative(CacheGeometry geometry) {
+        String policy = POLICIES[replacementPolicySelector.getSelectionModel().getSelectedIndex()];
+        if (policy.equals("lru")) {
+            return geometry.getSets() == 1 && geometry.getWays() > 8 ? new FullyAssociativeCache(geometry, getWritePolicy())
+                    : new SetAssociativeCache(geometry, getWritePolicy());
+        }
+        ReplacementPolicy replacement = policy.equals("opt") ? optPolicy(geometry.getLineSize()) : ReplacementPolicy.of(policy);
+        return new FlatSetAssociativeCache(geometry, getWritePolicy(), replacement);
+    }
 
-                if (cache instanceof MultiLevelCache) {
-                    l1Table.setItems(getRows(((MultiLevelCache) cache).getL1Blocks()));
-                    l2Table.setItems(getRows(((MultiLevelCache) cache).getL2Blocks()));
-                    l3Table.setItems(getRows(((MultiLevelCache) cache).getL3Blocks()));
-                } else {
-                    l1Table.setItems(getRows(cache.getBlocks()));
-                    l2Table.setItems(FXCollections.observableArrayList());
-                    l3Table.setItems(FXCollections.observableArrayList());
-                }
+    //OPT needs the whole trace up front, parsed by the same TextTraceParser SimulationTask reads it with
+    private OptPolicy optPolicy(int lineSize) {
+        TraceBuffer trace = optTrace;
+        if (trace == null) {
+            trace = new TraceBuffer();
+            TextTraceParser parser = new TextTraceParser();
+            parser.feed(ByteBuffer.wrap(addressInput.getText().getBytes(StandardCharsets.US_ASCII)), trace);
+            parser.finish(trace);
+        }
+        optAccesses = trace.size();
+        return new OptPolicy(trace.addresses(), trace.size(), lineSize);
+    }
 
-            } catch (NumberFormatException ex) {
-                log.append("Invalid input: ").append(line).append("\n");
+    //each run logs to a fresh temporary file; only the last LOG_VIEW_CAPACITY entries stay on screen
+    private SimulationLog openLog() throws IOException {
+        SimulationLog.Mode mode;
+        int sampleEvery = 1;
+        switch (logModeSelector.getSelectionModel().getSelectedIndex()) {
+            case 1:
+                mode = SimulationLog.Mode.MISSES_ONLY;
+                break;
+            case 2:
+                mode = SimulationLog.Mode.SAMPLED;
+                sampleEvery = Integer.parseInt(sampleField.getText().trim());
+                if (sampleEvery <= 0) throw new NumberFormatException("N must be positive");
+                break;
+            default:
+                mode = SimulationLog.Mode.ALL;
+        }
+        if (logFile != null) Files.deleteIfExists(logFile);
+        logFile = Files.createTempFile("cache-simulation", ".log");
+        logFile.toFile().deleteOnExit();
+        logView.getItems().clear();
+        return new SimulationLog(new AccessLogWriter(logFile), mode, sampleEvery, LOG_VIEW_CAPACITY, logView.getItems());
+    }
+
+    //a running task detaches its own tables once it has stopped, see finishSimulation()
+    private void cancelSimulation() {
+        if (currentTask != null) {
+            currentTask.cancel();
+        } else {
+            detachTables();
+        }
+    }
+
+    //tables of set-mapped caches follow the simulation live; any other cache is shown when it finishes
+    private List<CacheTableSync> attachTables() {
+        detachTables();
+        for (int level = 0; level < levelTables.size(); level++) {
+            CacheInterface levelCache = getLevel(level);
+            if (levelCache != null) {
+                attachTable(levelCache, levelTables.get(level));
+            } else {
+                levelTables.get(level).setItems(FXCollections.observableArrayList());
             }
         }
+        return tableSyncs;
+    }
 
-        outputArea.setText(log.toString());
-        updateStats();
-        updatePieChart();
+    private void attachTable(CacheInterface level, TableView<CacheRow> table) {
+        if (level instanceof SetMapped) {
+            tableSyncs.add(new CacheTableSync((SetMapped) level, table));
+        } else {
+            table.setItems(FXCollections.observableArrayList());
+        }
+    }
+
+    //the cache shown in the table of the given level, or null if the current cache has no such level
+    private SetMapped setStatsSource() {
+        CacheInterface top = getLevel(0);
+        return top instanceof SetMapped ? (SetMapped) top : null;
+    }
+
+    //redraws the heat map and reuse histogram; both are cleared when stats are off
+    private void updateSetStats() {
+        SetMapped source = setStatsSource();
+        SetStats stats = source == null ? null : source.getSetStats();
+        reuseChart.getData().clear();
+        if (stats == null) {
+            heatMap.draw(null);
+            return;
+        }
+        switch (heatMetricSelector.getSelectionModel().getSelectedIndex()) {
+            case 0: heatMap.draw(stats.accesses()); break;
+            case 2: heatMap.draw(stats.evictions()); break;
+            default: heatMap.draw(stats.misses()); break;
+        }
+        XYChart.Series<String, Number> series = new XYChart.Series<>();
+        series.getData().add(new XYChart.Data<>("cold", stats.getColdCount()));
+        int last = SetStats.BUCKETS - 1;
+        while (last > 0 && stats.getReuseCount(last) == 0) last--;
+        for (int bucket = 0; bucket <= last; bucket++) {
+            String range = bucket == 0 ? "0" : bucket == 1 ? "1" : (1L << (bucket - 1)) + "-" + ((1L << bucket) - 1);
+            series.getData().add(new XYChart.Data<>(range, stats.getReuseCount(bucket)));
+        }
+        reuseChart.getData().add(series);
+    }
+
+    private CacheInterface getLevel(int level) {
+        if (cache instanceof MultiLevelCache) {
+            MultiLevelCache multi = (MultiLevelCache) cache;
+            return level < multi.getLevelCount() ? multi.getLevel(level) : null;
+        }
+        return level == 0 ? cache : null;
+    }
+
+    //one info label and table per level of the loaded hierarchy
+    private void showLevels() {
+        int count = cache instanceof MultiLevelCache ? ((MultiLevelCache) cache).getLevelCount() : hierarchyConfig.getLevelCount();
+        if (levelTables.size() != count) {
+            levelTables = new ArrayList<>();
+            levelInfoLabels = new ArrayList<>();
+            levelsBox.getChildren().clear();
+            for (int level = 0; level < count; level++) {
+                Label info = new Label();
+                TableView<CacheRow> levelTable = createCacheTable();
+                levelInfoLabels.add(info);
+                levelTables.add(levelTable);
+                levelsBox.getChildren().addAll(info, new Label("L" + (level + 1) + " Cache"), levelTable);
+            }
+        }
+        for (int level = 0; level < count; level++) {
+            CacheInterface levelCache = getLevel(level);
+            levelInfoLabels.get(level).setText("L" + (level + 1) + " Blocks: " + (levelCache == null ? 0 : levelCache.getBlockCount()));
+            levelTables.get(level).setItems(FXCollections.observableArrayList());
+        }
+    }
+
+    private void loadHierarchy() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Open Hierarchy Configuration");
+        File selectedFile = fileChooser.showOpenDialog(null);
+        if (selectedFile == null) return;
+        try {
+            hierarchyConfig = HierarchyConfig.load(selectedFile.toPath());
+        } catch (IOException e) {
+            outputArea.setText("Error reading hierarchy: " + e.getMessage());
+            return;
+        } catch (IllegalArgumentException e) {
+            outputArea.setText("Error in hierarchy file, " + e.getMessage());
+            return;
+        }
+        cacheTypeSelector.getSelectionModel().select("Multi-Level Cache");
+        reset();
+        outputArea.setText("Loaded a " + hierarchyConfig.getLevelCount() + "-level hierarchy from " + selectedFile);
+    }
+
+    private void detachTables() {
+        for (CacheTableSync sync : tableSyncs) sync.detach();
+        tableSyncs = new ArrayList<>();
+    }
+
+    //called on the FX thread once the task is done, whichever way it ended
+    private void finishSimulation(SimulationTask task) {
+        updateSetStats();
+        progressLabel.textProperty().unbind();
+        progressBar.progressProperty().unbind();
+        progressLabel.setText(task.getMessage());
+        if (currentTask == task) {
+            currentTask = null;
+            simulateBtn.setDisable(false);
+            cancelBtn.setDisable(true);
+        }
+    }
+
+    private void refreshTables() {
+        for (CacheTableSync sync : tableSyncs) sync.finish();
+        for (int level = 0; level < levelTables.size(); level++) {
+            CacheInterface levelCache = getLevel(level);
+            if (levelCache != null) refreshStaticTable(levelCache, levelTables.get(level));
+        }
+    }
+
+    private void refreshStaticTable(CacheInterface level, TableView<CacheRow> table) {
+        if (!(level instanceof SetMapped)) table.setItems(getRows(level.getBlocks()));
     }
 
 
 
     private void reset() {
+        cancelSimulation();
+        forgetTraceFile();
         String selected = cacheTypeSelector.getValue();
         switch (selected) {
             case "Direct-Mapped (8 blocks)":
-                cache = new DirectMappedCache(8);
+                cache = new DirectMappedCache(CacheGeometry.ofBlocks(8, 1), getWritePolicy());
                 break;
             case "2-Way Set-Associative (8 blocks)":
-                cache = new SetAssociativeCache(8, 2);
+                cache = setAssociative(CacheGeometry.ofBlocks(8, 2));
                 break;
             case "4-Way Set-Associative (8 blocks)":
-                cache = new SetAssociativeCache(8, 4);
+                cache = setAssociative(CacheGeometry.ofBlocks(8, 4));
                 break;
             case "Multi-Level Cache":
-                CacheInterface l1 = new DirectMappedCache(8);
-                CacheInterface l2 = new SetAssociativeCache(8, 2);
-                CacheInterface l3 = new SetAssociativeCache(16, 4);
-                cache = new MultiLevelCache(l1, l2, l3);
+                cache = hierarchyConfig.build();
                 break;
         }
         cache.reset();
+        classifier = null;
         addressInput.clear();
         outputArea.clear();
+        logView.getItems().clear();
 
-        if (cache instanceof MultiLevelCache) {
-            l1InfoLabel.setText("L1 Blocks: " + ((MultiLevelCache) cache).getL1BlockCount());
-            l2InfoLabel.setText("L2 Blocks: " + ((MultiLevelCache) cache).getL2BlockCount());
-            l3InfoLabel.setText("L3 Blocks: " + ((MultiLevelCache) cache).getL3BlockCount());
-            l1Table.setItems(FXCollections.observableArrayList());
-            l2Table.setItems(FXCollections.observableArrayList());
-            l3Table.setItems(FXCollections.observableArrayList());
-        } else {
-            l1InfoLabel.setText("L1 Blocks: " + cache.getBlockCount());
-            l2InfoLabel.setText("L2 Blocks: 0");
-            l3InfoLabel.setText("L3 Blocks: 0");
-            l1Table.setItems(FXCollections.observableArrayList());
-            l2Table.setItems(FXCollections.observableArrayList());
-            l3Table.setItems(FXCollections.observableArrayList());
-        }
+        showLevels();
 
         hitsLabel.setText("Hits: 0");
         missesLabel.setText("Misses: 0");
         ratioLabel.setText("Hit Ratio: 0.00%");
+        progressBar.setProgress(0);
+        progressLabel.setText("");
         updatePieChart();
         updateStats();
+        updateSetStats();
     }
 
 
@@ -307,11 +596,25 @@ public class MainUI extends Application {
         fileChooser.setTitle("Open Memory Address File");
         fileChooser.getExtensionFilters().addAll(
                 new FileChooser.ExtensionFilter("Text Files", "*.txt"),
+                new FileChooser.ExtensionFilter("Compressed Traces", "*.gz"),
                 new FileChooser.ExtensionFilter("All Files", "*.*")
         );
 
         File selectedFile = fileChooser.showOpenDialog(null);
         if (selectedFile != null) {
+            try {
+                if (GzipTraceReader.isGzip(selectedFile.toPath())) {
+                    // streamed by the simulation itself rather than inflated into the text area
+                    addressInput.clear();
+                    traceFile = selectedFile.toPath();
+                    addressInput.setPromptText("Compressed trace " + selectedFile.getName() + " is streamed when you simulate;\ntype here to use addresses instead");
+                    outputArea.setText("Loaded " + selectedFile);
+                    return;
+                }
+            } catch (IOException ex) {
+                outputArea.setText("Error reading file: " + ex.getMessage());
+                return;
+            }
             try (BufferedReader reader = new BufferedReader(new FileReader(selectedFile))) {
                 StringBuilder content = new StringBuilder();
                 String line;
@@ -325,6 +628,10 @@ public class MainUI extends Application {
         }
     }
 
+    private void forgetTraceFile() {
+        traceFile = null;
+        addressInput.setPromptText(ADDRESS_PROMPT);
+    }
 
     private void updateTable() {
 
@@ -333,7 +640,7 @@ public class MainUI extends Application {
 
             for (int i = 0; i < blocks.length; i++) {
                 CacheBlock block = blocks[i];
-                rows.add(new CacheRow(i, block.getTag(), block.isValid()));
+                rows.add(new CacheRow(i, block.getTag(), block.isValid(), block.isDirty()));
             }
 
             table.setItems(rows);
@@ -363,7 +670,7 @@ public class MainUI extends Application {
         ObservableList<CacheRow> rows = FXCollections.observableArrayList();
         for (int i = 0; i < blocks.length; i++) {
             CacheBlock block = blocks[i];
-            rows.add(new CacheRow(i, block.getTag(), block.isValid()));
+            rows.add(new CacheRow(i, block.getTag(), block.isValid(), block.isDirty()));
         }
         return rows;
     }
@@ -377,6 +684,31 @@ public class MainUI extends Application {
         hitsLabel.setText("Hits: " + hits);
         missesLabel.setText("Misses: " + misses);
         ratioLabel.setText(String.format("Hit Ratio: %.2f%%", ratio));
+        trafficLabel.setText(String.format("Read: %,d B, Written: %,d B", cache.getBytesRead(), cache.getBytesWritten()));
+        amatLabel.setText(levelSummary());
+        missClassLabel.setText(missClasses());
+    }
+
+    private String missClasses() {
+        if (classifier == null) return "";
+        return String.format("Compulsory: %,d, Capacity: %,d, Conflict: %,d", classifier.getCompulsoryMissCount(),
+                classifier.getCapacityMissCount(), classifier.getConflictMissCount());
+    }
+
+    //per-level miss rates and the average memory access time of a hierarchy; empty for a single cache
+    private String levelSummary() {
+        if (!(cache instanceof MultiLevelCache)) return "";
+        MultiLevelCache multi = (MultiLevelCache) cache;
+        StringBuilder summary = new StringBuilder(String.format("AMAT: %.2f cycles", multi.getAverageAccessTime()));
+        for (int level = 0; level < multi.getLevelCount(); level++) {
+            long reached = multi.getLevelAccessCount(level);
+            long missed = level + 1 < multi.getLevelCount() ? multi.getLevelAccessCount(level + 1) : multi.getMissCount();
+            summary.append(String.format("%nL%d: %.2f%% miss rate, %d cycles, %,d B read, %,d B written", level + 1,
+                    reached == 0 ? 0.0 : missed * 100.0 / reached, multi.getLevelCycles(level),
+                    multi.getLevelBytesRead(level), multi.getLevelBytesWritten(level)));
+        }
+        summary.append(String.format("%nMemory: %d cycles", multi.getMemoryCycles()));
+        return summary.toString();
     }
     private void updatePieChart() {
         int hits = cache.getHitCount();
@@ -403,16 +735,29 @@ public class MainUI extends Application {
         fileChooser.setTitle("Save Simulation Output");
         fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Text Files", "*.txt"));
 
+        if (currentTask != null) {
+            outputArea.appendText("\nThe simulation is still running.");
+            return;
+        }
         File file = fileChooser.showSaveDialog(null);
         if (file != null) {
-            try (FileWriter writer = new FileWriter(file)) {
+            try (FileOutputStream stream = new FileOutputStream(file);
+                 Writer writer = new OutputStreamWriter(stream)) {
                 writer.write("Cache Simulation Result\n\n");
-                writer.write(outputArea.getText());
+                writer.flush();
+                // the log can be far larger than memory, so it is streamed from its file
+                if (logFile != null && Files.exists(logFile)) {
+                    Files.copy(logFile, stream);
+                }
                 writer.write("\n\nHits: " + cache.getHitCount());
                 writer.write("\nMisses: " + cache.getMissCount());
                 int total = cache.getHitCount() + cache.getMissCount();
                 double ratio = total == 0 ? 0.0 : (double) cache.getHitCount() / total;
                 writer.write("\nHit Ratio: " + String.format("%.2f", ratio));
+                writer.write("\nBytes Read: " + cache.getBytesRead());
+                writer.write("\nBytes Written: " + cache.getBytesWritten());
+                if (classifier != null) writer.write("\n" + missClasses());
+                if (cache instanceof MultiLevelCache) writer.write("\n" + levelSummary());
                 outputArea.appendText("\nOutput saved to: " + file.getAbsolutePath());
             } catch (IOException e) {
                 outputArea.appendText("\nError saving file: " + e.getMessage());
@@ -423,11 +768,13 @@ public class MainUI extends Application {
         TableView<CacheRow> table = new TableView<>();
         TableColumn<CacheRow, Integer> indexCol = new TableColumn<>("Index");
         indexCol.setCellValueFactory(new PropertyValueFactory<>("index"));
-        TableColumn<CacheRow, Integer> tagCol = new TableColumn<>("Tag");
+        TableColumn<CacheRow, Long> tagCol = new TableColumn<>("Tag");
         tagCol.setCellValueFactory(new PropertyValueFactory<>("tag"));
         TableColumn<CacheRow, Boolean> validCol = new TableColumn<>("Valid");
         validCol.setCellValueFactory(new PropertyValueFactory<>("valid"));
-        table.getColumns().addAll(indexCol, tagCol, validCol);
+        TableColumn<CacheRow, Boolean> dirtyCol = new TableColumn<>("Dirty");
+        dirtyCol.setCellValueFactory(new PropertyValueFactory<>("dirty"));
+        table.getColumns().addAll(indexCol, tagCol, validCol, dirtyCol);
         table.setColumnResizePolicy(TableView.CONSTRAINED_RESIZE_POLICY);
         return table;
     }
@@ -0,0 +1,53 @@
+package ui;
+
+import javafx.scene.canvas.Canvas;
+import javafx.scene.image.PixelWriter;
+import javafx.scene.paint.Color;
+
+/**
+ * Per-set counters drawn as a grid of cells, set 0 at the top left, row by row. Cells shrink
+ * with the set count down to one pixel; beyond that each pixel shows the busiest of the sets it
+ * covers, so a redraw costs one pass over the counters plus one write per pixel whatever the
+ * set count.
+ */
+class SetHeatMap extends Canvas {
+    private static final int MAX_CELL = 24;
+
+    SetHeatMap(double width, double height) {
+        super(width, height);
+    }
+
+    void draw(long[] values) {
+        int width = (int) getWidth();
+        int height = (int) getHeight();
+        getGraphicsContext2D().clearRect(0, 0, width, height);
+        if (values == null || values.length == 0) return;
+        int cell = (int) Math.max(1, Math.min(MAX_CELL, Math.sqrt((double) width * height / values.length)));
+        int columns = width / cell;
+        int rows = height / cell;
+        int cells = columns * rows;
+        // sets per cell once they no longer fit one to a cell
+        int perCell = (values.length + cells - 1) / cells;
+        long[] heat = new long[(values.length + perCell - 1) / perCell];
+        long max = 0;
+        for (int set = 0; set < values.length; set++) {
+            int c = set / perCell;
+            if (values[set] > heat[c]) heat[c] = values[set];
+            if (values[set] > max) max = values[set];
+        }
+        PixelWriter pixels = getGraphicsContext2D().getPixelWriter();
+        for (int c = 0; c < heat.length; c++) {
+            Color color = color(max == 0 ? 0 : Math.sqrt((double) heat[c] / max));
+            int x0 = c % columns * cell;
+            int y0 = c / columns * cell;
+            for (int y = y0; y < y0 + cell; y++) {
+                for (int x = x0; x < x0 + cell; x++) pixels.setColor(x, y, color);
+            }
+        }
+    }
+
+    //dark blue for cold sets through to red for the hottest; square-root scaled so lukewarm sets stay visible
+    private static Color color(double level) {
+        return Color.hsb(240 * (1 - level), 0.9, 0.35 + 0.65 * level);
+    }
+}
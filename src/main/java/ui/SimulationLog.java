@@ -0,0 +1,90 @@
+package ui;
+
+import javafx.application.Platform;
+import javafx.collections.ObservableList;
+import sim.AccessLogWriter;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Per-access log of a UI simulation. Every kept entry is streamed to disk through an
+ * AccessLogWriter; only the most recent entries are kept in memory, in a ring that flush()
+ * copies into the ListView's items. Entries can be limited to misses or to one access in N.
+ */
+class SimulationLog {
+    enum Mode { ALL, MISSES_ONLY, SAMPLED }
+
+    private final AccessLogWriter writer;
+    private final Mode mode;
+    private final int sampleEvery;
+    private final String[] ring;
+    private final ObservableList<String> items;
+    private final AtomicBoolean batchPending = new AtomicBoolean(false);
+    private long written = 0;   // entries added so far
+    private long published = 0; // entries already handed to the FX thread
+    private long accesses = 0;
+
+    SimulationLog(AccessLogWriter writer, Mode mode, int sampleEvery, int capacity, ObservableList<String> items) {
+        this.writer = writer;
+        this.mode = mode;
+        this.sampleEvery = Math.max(1, sampleEvery);
+        this.ring = new String[capacity];
+        this.items = items;
+    }
+
+    //simulation thread: whether the access about to be logged should be kept
+    boolean accept(boolean hit) {
+        long n = accesses++;
+        switch (mode) {
+            case MISSES_ONLY: return !hit;
+            case SAMPLED: return n % sampleEvery == 0;
+            default: return true;
+        }
+    }
+
+    //simulation thread
+    void add(String entry) {
+        writer.write(entry);
+        ring[(int) (written++ % ring.length)] = entry;
+    }
+
+    //simulation thread: hands the entries added since the last flush to the list view
+    void flush() {
+        if (written == published || batchPending.get()) return;
+        String[] batch = drain();
+        batchPending.set(true);
+        Platform.runLater(() -> {
+            append(batch);
+            batchPending.set(false);
+        });
+    }
+
+    //FX thread, after the simulation thread has stopped and closed the log
+    void finish() {
+        if (written != published) append(drain());
+    }
+
+    void close() throws IOException {
+        writer.close();
+    }
+
+    long getEntryCount() {
+        return written;
+    }
+
+    //entries not yet published, oldest first; anything that already fell out of the ring is skipped
+    private String[] drain() {
+        long first = Math.max(published, written - ring.length);
+        String[] batch = new String[(int) (written - first)];
+        for (int i = 0; i < batch.length; i++) batch[i] = ring[(int) ((first + i) % ring.length)];
+        published = written;
+        return batch;
+    }
+
+    private void append(String[] batch) {
+        items.addAll(batch);
+        int excess = items.size() - ring.length;
+        if (excess > 0) items.remove(0, excess);
+    }
+}
@@ -0,0 +1,154 @@
+package ui;
+
+import Cache.CacheInterface;
+import Cache.MultiLevelCache;
+import javafx.concurrent.Task;
+import trace.BinaryTraceFormat;
+import trace.GzipTraceReader;
+import trace.TextTraceParser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Runs the addresses typed into the UI, or a compressed trace file streamed through
+ * GzipTraceReader, through a cache off the FX application thread.
+ * Text is read by the same TextTraceParser that builds the OPT index and reads files in the
+ * headless runner, so an address may be preceded by R, W or I; W runs it as a store.
+ * Progress (addresses processed and the running hit ratio) is published at most every
+ * PUBLISH_INTERVAL_NANOS and the cache tables are refreshed at most every FRAME_INTERVAL_NANOS,
+ * so the FX thread is not flooded with updates. The per-access log goes to a SimulationLog,
+ * which is closed when the task ends; the task value is the number of log entries written.
+ */
+class SimulationTask extends Task<Long> {
+    private static final long PUBLISH_INTERVAL_NANOS = 100_000_000L;
+    private static final long FRAME_INTERVAL_NANOS = 33_000_000L; // ~30 table refreshes per second
+
+    private final CacheInterface cache;
+    private final String input;
+    private final Path file;
+    private final List<CacheTableSync> tables;
+    private final SimulationLog log;
+    private long expectedAccesses = -1;
+    private ByteBuffer buffer;
+    private long processed = 0;
+    private long hits = 0;
+    private long lastPublish;
+    private long lastFrame;
+    private int lastAccessedIndex = -1;
+    private boolean lastAccessWasHit = false;
+
+    SimulationTask(CacheInterface cache, String input, List<CacheTableSync> tables, SimulationLog log) {
+        this(cache, input, null, tables, log);
+    }
+
+    //a gzip-compressed trace, text or binary; its length is unknown, so progress is indeterminate
+    SimulationTask(CacheInterface cache, Path file, List<CacheTableSync> tables, SimulationLog log) {
+        this(cache, null, file, tables, log);
+    }
+
+    private SimulationTask(CacheInterface cache, String input, Path file, List<CacheTableSync> tables, SimulationLog log) {
+        this.cache = cache;
+        this.input = input;
+        this.file = file;
+        this.tables = tables;
+        this.log = log;
+    }
+
+    //the number of accesses the trace must hold, e.g. the length of an OPT next-use index
+    void expectAccesses(long count) {
+        expectedAccesses = count;
+    }
+
+    @Override
+    protected Long call() throws IOException {
+        try {
+            simulate();
+        } catch (CancellationException e) {
+            // cancelled between two accesses; the task state already says so
+        } finally {
+            log.close();
+        }
+        return log.getEntryCount();
+    }
+
+    private void simulate() throws IOException {
+        lastPublish = System.nanoTime();
+        lastFrame = lastPublish;
+        long invalid;
+        if (file != null) {
+            GzipTraceReader reader = new GzipTraceReader(file);
+            reader.read(this::accept);
+            invalid = reader.getInvalidCount();
+        } else {
+            buffer = ByteBuffer.wrap(input.getBytes(StandardCharsets.US_ASCII));
+            TextTraceParser parser = new TextTraceParser();
+            parser.feed(buffer, this::accept);
+            parser.finish(this::accept);
+            invalid = parser.getInvalidCount();
+        }
+        if (invalid > 0) log.add(String.format("Skipped %,d invalid addresses", invalid));
+        publish();
+        if (file != null) updateProgress(1, 1);
+        if (expectedAccesses >= 0 && processed != expectedAccesses) {
+            throw new IOException("The trace has " + processed + " addresses but the OPT index was built from " + expectedAccesses);
+        }
+    }
+
+    private void accept(long address, int op) {
+        boolean write = op == BinaryTraceFormat.OP_WRITE;
+        boolean hit = write ? cache.write(address) : cache.access(address);
+        lastAccessedIndex = cache.getLastAccessedIndex();
+        lastAccessWasHit = hit;
+        processed++;
+        if (hit) hits++;
+
+        if (log.accept(hit)) {
+            String result = hit ? "HIT" : "MISS";
+            if (cache instanceof MultiLevelCache) {
+                result = ((MultiLevelCache) cache).getLastHitLevel();
+            }
+            log.add((write ? "Write 0x" : "Address 0x") + Long.toHexString(address) + " => " + result);
+        }
+
+        if ((processed & 255) == 0) {
+            if (isCancelled()) throw new CancellationException();
+            long now = System.nanoTime();
+            if (now - lastFrame >= FRAME_INTERVAL_NANOS) {
+                lastFrame = now;
+                for (CacheTableSync table : tables) table.flush();
+                log.flush();
+            }
+            if (now - lastPublish >= PUBLISH_INTERVAL_NANOS) {
+                lastPublish = now;
+                publish();
+            }
+        }
+    }
+
+    private void publish() {
+        if (buffer != null) updateProgress(buffer.position(), Math.max(1, buffer.limit()));
+        else updateProgress(-1, 1);
+        double ratio = processed == 0 ? 0 : (hits * 100.0) / processed;
+        updateMessage(String.format("Processed %,d addresses - hit ratio %.2f%%", processed, ratio));
+    }
+
+    //FX thread, once the task has ended; the caches read their listener once per access, so this
+    //is safe even while a cancelled task is still winding down
+    void detachTables() {
+        for (CacheTableSync table : tables) table.detach();
+    }
+
+    //only meaningful once the task has succeeded
+    int getLastAccessedIndex() {
+        return lastAccessedIndex;
+    }
+
+    boolean wasLastAccessHit() {
+        return lastAccessWasHit;
+    }
+}